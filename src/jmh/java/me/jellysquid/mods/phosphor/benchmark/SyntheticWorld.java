@@ -0,0 +1,117 @@
+package me.jellysquid.mods.phosphor.benchmark;
+
+import java.util.Random;
+
+/**
+ * Generates synthetic chunk sections for use in benchmarks. The generated data only describes the kind of block at
+ * each position, which benchmarks can then map onto whatever representation they need (shapes, light levels, etc.)
+ * This allows us to reproduce common world layouts without needing to bootstrap the game or load a world.
+ *
+ * Blocks are indexed using the same layout as {@link net.minecraft.world.chunk.ChunkNibbleArray}, that is
+ * {@code y << 8 | z << 4 | x}.
+ */
+public enum SyntheticWorld {
+    /**
+     * A section which is entirely empty, such as those found high up in the sky.
+     */
+    ALL_AIR {
+        @Override
+        protected void generate(byte[] blocks, Random random) {
+            // The array is already filled with air
+        }
+    },
+
+    /**
+     * A section of mostly solid stone which is carved out by a number of overlapping spherical caves.
+     */
+    DENSE_CAVES {
+        @Override
+        protected void generate(byte[] blocks, Random random) {
+            for (int i = 0; i < blocks.length; i++) {
+                blocks[i] = STONE;
+            }
+
+            for (int cave = 0; cave < 12; cave++) {
+                int cx = random.nextInt(16);
+                int cy = random.nextInt(16);
+                int cz = random.nextInt(16);
+                int r = 2 + random.nextInt(3);
+
+                for (int y = 0; y < 16; y++) {
+                    for (int z = 0; z < 16; z++) {
+                        for (int x = 0; x < 16; x++) {
+                            int dx = x - cx;
+                            int dy = y - cy;
+                            int dz = z - cz;
+
+                            if ((dx * dx) + (dy * dy) + (dz * dz) <= r * r) {
+                                blocks[getIndex(x, y, z)] = AIR;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    },
+
+    /**
+     * A flat floor of stone lit by a regular grid of torches, as is common in mob-proofed areas and bases.
+     */
+    TORCH_GRID {
+        @Override
+        protected void generate(byte[] blocks, Random random) {
+            for (int z = 0; z < 16; z++) {
+                for (int x = 0; x < 16; x++) {
+                    blocks[getIndex(x, 0, z)] = STONE;
+
+                    if ((x & 3) == 0 && (z & 3) == 0) {
+                        blocks[getIndex(x, 1, z)] = TORCH;
+                    }
+                }
+            }
+        }
+    },
+
+    /**
+     * A section full of player builds made from glass, slabs and stairs. These blocks have non-trivial light occlusion
+     * shapes and exercise the slowest paths of the lighting engine.
+     */
+    GLASS_SLAB_MIX {
+        private final byte[] palette = new byte[] { AIR, STONE, GLASS, BOTTOM_SLAB, TOP_SLAB, STAIRS };
+
+        @Override
+        protected void generate(byte[] blocks, Random random) {
+            for (int i = 0; i < blocks.length; i++) {
+                blocks[i] = this.palette[random.nextInt(this.palette.length)];
+            }
+        }
+    };
+
+    public static final byte AIR = 0;
+    public static final byte STONE = 1;
+    public static final byte TORCH = 2;
+    public static final byte GLASS = 3;
+    public static final byte BOTTOM_SLAB = 4;
+    public static final byte TOP_SLAB = 5;
+    public static final byte STAIRS = 6;
+
+    /**
+     * Generates the blocks of a single 16x16x16 chunk section.
+     *
+     * @param seed The seed used for random generation, which allows for repeatable results between benchmark runs
+     * @return An array of 4096 block types
+     */
+    public byte[] createSection(long seed) {
+        byte[] blocks = new byte[16 * 16 * 16];
+
+        this.generate(blocks, new Random(seed));
+
+        return blocks;
+    }
+
+    protected abstract void generate(byte[] blocks, Random random);
+
+    public static int getIndex(int x, int y, int z) {
+        return (y << 8) | (z << 4) | x;
+    }
+}
@@ -0,0 +1,121 @@
+package me.jellysquid.mods.phosphor.common.chunk.light;
+
+import me.jellysquid.mods.phosphor.benchmark.SyntheticWorld;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link PackedNibbleArray} against the dense 2048-byte layout of ChunkNibbleArray. The light levels of each
+ * section are derived from the synthetic worlds, where open blocks are fully lit and solid blocks are dark.
+ *
+ * The copy benchmarks allocate exactly one section in the respective layout, so running them with {@code -prof gc} and
+ * comparing {@code gc.alloc.rate.norm} gives the memory footprint of each layout.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PackedNibbleArrayBenchmark {
+    @Param
+    public SyntheticWorld world;
+
+    private byte[] dense;
+    private PackedNibbleArray packed;
+
+    private int[] indices;
+
+    @Setup
+    public void setup() {
+        byte[] blocks = this.world.createSection(0xC0FFEEL);
+
+        this.dense = new byte[2048];
+
+        for (int i = 0; i < blocks.length; i++) {
+            int level = getLightLevel(blocks[i]);
+
+            this.dense[i >> 1] |= level << ((i & 1) << 2);
+        }
+
+        this.packed = PackedNibbleArray.tryPack(this.dense);
+
+        if (this.packed == null) {
+            throw new IllegalStateException("Section cannot be packed");
+        }
+
+        Random random = new Random(0xBEEFL);
+
+        this.indices = new int[4096];
+
+        for (int i = 0; i < this.indices.length; i++) {
+            this.indices[i] = random.nextInt(4096);
+        }
+    }
+
+    private static int getLightLevel(byte block) {
+        switch (block) {
+            case SyntheticWorld.AIR:
+            case SyntheticWorld.GLASS:
+                return 15;
+            case SyntheticWorld.TORCH:
+                return 14;
+            default:
+                return 0;
+        }
+    }
+
+    @Benchmark
+    public void getDense(Blackhole bh) {
+        byte[] arr = this.dense;
+
+        for (int idx : this.indices) {
+            bh.consume((arr[idx >> 1] >>> ((idx & 1) << 2)) & 15);
+        }
+    }
+
+    @Benchmark
+    public void getPacked(Blackhole bh) {
+        PackedNibbleArray arr = this.packed;
+
+        for (int idx : this.indices) {
+            bh.consume(arr.get(idx));
+        }
+    }
+
+    @Benchmark
+    public void setDense() {
+        byte[] arr = this.dense;
+
+        for (int idx : this.indices) {
+            int byteIdx = idx >> 1;
+            int shift = (idx & 1) << 2;
+
+            arr[byteIdx] = (byte) ((arr[byteIdx] & ~(15 << shift)) | (((arr[byteIdx] >>> shift) & 15) << shift));
+        }
+    }
+
+    @Benchmark
+    public void setPacked() {
+        PackedNibbleArray arr = this.packed;
+
+        for (int idx : this.indices) {
+            arr.set(idx, arr.get(idx));
+        }
+    }
+
+    @Benchmark
+    public byte[] copyDense() {
+        return this.dense.clone();
+    }
+
+    @Benchmark
+    public PackedNibbleArray copyPacked() {
+        return this.packed.copy();
+    }
+
+    @Benchmark
+    public PackedNibbleArray pack() {
+        return PackedNibbleArray.tryPack(this.dense);
+    }
+}
@@ -0,0 +1,137 @@
+package me.jellysquid.mods.phosphor.common.util;
+
+import me.jellysquid.mods.phosphor.benchmark.SyntheticWorld;
+import net.minecraft.util.math.Direction;
+import net.minecraft.util.shape.VoxelShape;
+import net.minecraft.util.shape.VoxelShapes;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link LightUtil#unionCoversFullCube(VoxelShape, VoxelShape)} against the vanilla implementation for the
+ * pairs of extruded faces which the light engine would encounter while propagating through each synthetic world, and
+ * against the memoized results and coverage masks of the same faces.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LightUtilBenchmark {
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    @Param
+    public SyntheticWorld world;
+
+    private VoxelShape[] fromShapes;
+    private VoxelShape[] toShapes;
+
+    private long[] fromCoverage;
+    private long[] toCoverage;
+
+    @Setup
+    public void setup() {
+        byte[] blocks = this.world.createSection(0xC0FFEEL);
+
+        VoxelShape bottomSlab = VoxelShapes.cuboid(0.0D, 0.0D, 0.0D, 1.0D, 0.5D, 1.0D);
+        VoxelShape topSlab = VoxelShapes.cuboid(0.0D, 0.5D, 0.0D, 1.0D, 1.0D, 1.0D);
+        VoxelShape stairs = VoxelShapes.union(bottomSlab, VoxelShapes.cuboid(0.0D, 0.5D, 0.5D, 1.0D, 1.0D, 1.0D));
+
+        // Like the shape cache of each block state, every block shares the same extruded face instances
+        VoxelShape[][] faces = new VoxelShape[SyntheticWorld.STAIRS + 1][DIRECTIONS.length];
+
+        for (byte block = 0; block < faces.length; block++) {
+            for (Direction dir : DIRECTIONS) {
+                faces[block][dir.ordinal()] = getOpaqueShape(block, dir, bottomSlab, topSlab, stairs);
+            }
+        }
+
+        Random random = new Random(0xBEEFL);
+
+        this.fromShapes = new VoxelShape[blocks.length];
+        this.toShapes = new VoxelShape[blocks.length];
+
+        this.fromCoverage = new long[blocks.length * LightUtil.FACE_COVERAGE_WORDS];
+        this.toCoverage = new long[blocks.length * LightUtil.FACE_COVERAGE_WORDS];
+
+        for (int i = 0; i < blocks.length; i++) {
+            Direction dir = DIRECTIONS[random.nextInt(DIRECTIONS.length)];
+
+            int x = i & 15;
+            int y = i >> 8;
+            int z = (i >> 4) & 15;
+
+            int adjX = (x + dir.getOffsetX()) & 15;
+            int adjY = (y + dir.getOffsetY()) & 15;
+            int adjZ = (z + dir.getOffsetZ()) & 15;
+
+            byte from = blocks[i];
+            byte to = blocks[SyntheticWorld.getIndex(adjX, adjY, adjZ)];
+
+            this.fromShapes[i] = faces[from][dir.ordinal()];
+            this.toShapes[i] = faces[to][dir.getOpposite().ordinal()];
+
+            int offset = i * LightUtil.FACE_COVERAGE_WORDS;
+
+            if (!LightUtil.computeFaceCoverage(this.fromShapes[i], dir.getAxis(), this.fromCoverage, offset) ||
+                    !LightUtil.computeFaceCoverage(this.toShapes[i], dir.getAxis(), this.toCoverage, offset)) {
+                throw new IllegalStateException("Shapes of the synthetic world should be aligned to the coverage grid");
+            }
+        }
+    }
+
+    // Mirrors ChunkLightProvider#getOpaqueShape, which only returns a non-empty shape for blocks with sided transparency
+    private static VoxelShape getOpaqueShape(byte block, Direction dir, VoxelShape bottomSlab, VoxelShape topSlab, VoxelShape stairs) {
+        switch (block) {
+            case SyntheticWorld.BOTTOM_SLAB:
+                return VoxelShapes.extrudeFace(bottomSlab, dir);
+            case SyntheticWorld.TOP_SLAB:
+                return VoxelShapes.extrudeFace(topSlab, dir);
+            case SyntheticWorld.STAIRS:
+                return VoxelShapes.extrudeFace(stairs, dir);
+            default:
+                return VoxelShapes.empty();
+        }
+    }
+
+    @Benchmark
+    public void phosphor(Blackhole bh) {
+        VoxelShape[] from = this.fromShapes;
+        VoxelShape[] to = this.toShapes;
+
+        for (int i = 0; i < from.length; i++) {
+            bh.consume(LightUtil.unionCoversFullCube(from[i], to[i]));
+        }
+    }
+
+    @Benchmark
+    public void vanilla(Blackhole bh) {
+        VoxelShape[] from = this.fromShapes;
+        VoxelShape[] to = this.toShapes;
+
+        for (int i = 0; i < from.length; i++) {
+            bh.consume(VoxelShapes.unionCoversFullCube(from[i], to[i]));
+        }
+    }
+
+    @Benchmark
+    public void memoized(Blackhole bh) {
+        VoxelShape[] from = this.fromShapes;
+        VoxelShape[] to = this.toShapes;
+
+        for (int i = 0; i < from.length; i++) {
+            bh.consume(FaceOcclusionCache.unionCoversFullCube(from[i], to[i]));
+        }
+    }
+
+    @Benchmark
+    public void faceCoverage(Blackhole bh) {
+        long[] from = this.fromCoverage;
+        long[] to = this.toCoverage;
+
+        for (int offset = 0; offset < from.length; offset += LightUtil.FACE_COVERAGE_WORDS) {
+            bh.consume(LightUtil.unionCoversFullFace(from, offset, to, offset));
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package me.jellysquid.mods.phosphor.common.util.collections;
+
+import net.minecraft.util.math.ChunkSectionPos;
+import net.minecraft.world.chunk.ChunkNibbleArray;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the lookups which back the uncached path of ChunkToNibbleArrayMap#get, along with the cost of flushing a
+ * batch of updates to readers. The map is populated with the light arrays of a server with a view distance of 16.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DoubleBufferedLong2ObjectHashMapBenchmark {
+    private static final int RADIUS = 16;
+
+    @Param({ "64", "4096" })
+    public int updates;
+
+    private DoubleBufferedLong2ObjectHashMap<ChunkNibbleArray> map;
+
+    private long[] queries;
+    private long[] updatedKeys;
+
+    @Setup
+    public void setup() {
+        this.map = new DoubleBufferedLong2ObjectHashMap<>();
+
+        for (int x = -RADIUS; x <= RADIUS; x++) {
+            for (int z = -RADIUS; z <= RADIUS; z++) {
+                for (int y = -1; y <= 16; y++) {
+                    this.map.putSync(ChunkSectionPos.asLong(x, y, z), new ChunkNibbleArray());
+                }
+            }
+        }
+
+        this.map.flushChangesSync();
+
+        Random random = new Random(0xC0FFEEL);
+
+        this.queries = createRandomKeys(random, 4096);
+        this.updatedKeys = createRandomKeys(random, this.updates);
+    }
+
+    private static long[] createRandomKeys(Random random, int count) {
+        long[] keys = new long[count];
+
+        for (int i = 0; i < count; i++) {
+            int x = random.nextInt(RADIUS * 2 + 1) - RADIUS;
+            int y = random.nextInt(18) - 1;
+            int z = random.nextInt(RADIUS * 2 + 1) - RADIUS;
+
+            keys[i] = ChunkSectionPos.asLong(x, y, z);
+        }
+
+        return keys;
+    }
+
+    @Benchmark
+    public void getSync(Blackhole bh) {
+        for (long key : this.queries) {
+            bh.consume(this.map.getSync(key));
+        }
+    }
+
+    @Benchmark
+    public void getAsync(Blackhole bh) {
+        for (long key : this.queries) {
+            bh.consume(this.map.getAsync(key));
+        }
+    }
+
+    @Benchmark
+    public void flushChangesSync() {
+        DoubleBufferedLong2ObjectHashMap<ChunkNibbleArray> map = this.map;
+
+        for (long key : this.updatedKeys) {
+            map.putSync(key, map.getSync(key));
+        }
+
+        map.flushChangesSync();
+    }
+}
@@ -0,0 +1,111 @@
+package me.jellysquid.mods.phosphor.common.util.collections;
+
+import net.minecraft.util.math.ChunkSectionPos;
+import net.minecraft.world.chunk.ChunkNibbleArray;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The same workload as {@link DoubleBufferedLong2ObjectHashMapBenchmark}, run against the column-indexed map which now
+ * backs ChunkToNibbleArrayMap. The column walks compare looking up every section of a column by its key against
+ * fetching the column once, which is what SkyLightStorage#getLight does when searching upwards for light data.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DoubleBufferedSectionColumnMapBenchmark {
+    private static final int RADIUS = 16;
+
+    @Param({ "64", "4096" })
+    public int updates;
+
+    private DoubleBufferedSectionColumnMap<ChunkNibbleArray> map;
+
+    private long[] queries;
+    private long[] updatedKeys;
+
+    @Setup
+    public void setup() {
+        this.map = new DoubleBufferedSectionColumnMap<>(ChunkNibbleArray[]::new);
+
+        for (int x = -RADIUS; x <= RADIUS; x++) {
+            for (int z = -RADIUS; z <= RADIUS; z++) {
+                for (int y = -1; y <= 16; y++) {
+                    this.map.putSync(ChunkSectionPos.asLong(x, y, z), new ChunkNibbleArray());
+                }
+            }
+        }
+
+        this.map.flushChangesSync();
+
+        Random random = new Random(0xC0FFEEL);
+
+        this.queries = createRandomKeys(random, 4096);
+        this.updatedKeys = createRandomKeys(random, this.updates);
+    }
+
+    private static long[] createRandomKeys(Random random, int count) {
+        long[] keys = new long[count];
+
+        for (int i = 0; i < count; i++) {
+            int x = random.nextInt(RADIUS * 2 + 1) - RADIUS;
+            int y = random.nextInt(18) - 1;
+            int z = random.nextInt(RADIUS * 2 + 1) - RADIUS;
+
+            keys[i] = ChunkSectionPos.asLong(x, y, z);
+        }
+
+        return keys;
+    }
+
+    @Benchmark
+    public void getSync(Blackhole bh) {
+        for (long key : this.queries) {
+            bh.consume(this.map.getSync(key));
+        }
+    }
+
+    @Benchmark
+    public void getAsync(Blackhole bh) {
+        for (long key : this.queries) {
+            bh.consume(this.map.getAsync(key));
+        }
+    }
+
+    @Benchmark
+    public void walkColumnByKey(Blackhole bh) {
+        for (long key : this.queries) {
+            int x = ChunkSectionPos.getX(key);
+            int z = ChunkSectionPos.getZ(key);
+
+            for (int y = ChunkSectionPos.getY(key); y <= 16; y++) {
+                bh.consume(this.map.getAsync(ChunkSectionPos.asLong(x, y, z)));
+            }
+        }
+    }
+
+    @Benchmark
+    public void walkColumnByIndex(Blackhole bh) {
+        for (long key : this.queries) {
+            ChunkNibbleArray[] column = this.map.getColumnAsync(key);
+
+            for (int y = ChunkSectionPos.getY(key); y <= 16; y++) {
+                bh.consume(column[y - DoubleBufferedSectionColumnMap.MIN_SECTION_Y]);
+            }
+        }
+    }
+
+    @Benchmark
+    public void flushChangesSync() {
+        DoubleBufferedSectionColumnMap<ChunkNibbleArray> map = this.map;
+
+        for (long key : this.updatedKeys) {
+            map.putSync(key, map.getSync(key));
+        }
+
+        map.flushChangesSync();
+    }
+}
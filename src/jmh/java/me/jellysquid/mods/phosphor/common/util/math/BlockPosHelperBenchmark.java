@@ -0,0 +1,55 @@
+package me.jellysquid.mods.phosphor.common.util.math;
+
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Direction;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link BlockPosHelper#offsetWithinSection(long, Direction)} against {@link BlockPos#offset(long, Direction)}
+ * for the neighbors of positions in the interior of chunk sections.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BlockPosHelperBenchmark {
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private long[] positions;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(0xC0FFEEL);
+
+        this.positions = new long[4096];
+
+        for (int i = 0; i < this.positions.length; i++) {
+            int x = (random.nextInt(2048) - 1024) * 16 + 1 + random.nextInt(14);
+            int y = random.nextInt(16) * 16 + 1 + random.nextInt(14);
+            int z = (random.nextInt(2048) - 1024) * 16 + 1 + random.nextInt(14);
+
+            this.positions[i] = BlockPos.asLong(x, y, z);
+        }
+    }
+
+    @Benchmark
+    public void phosphor(Blackhole bh) {
+        for (long pos : this.positions) {
+            for (Direction dir : DIRECTIONS) {
+                bh.consume(BlockPosHelper.offsetWithinSection(pos, dir));
+            }
+        }
+    }
+
+    @Benchmark
+    public void vanilla(Blackhole bh) {
+        for (long pos : this.positions) {
+            for (Direction dir : DIRECTIONS) {
+                bh.consume(BlockPos.offset(pos, dir));
+            }
+        }
+    }
+}
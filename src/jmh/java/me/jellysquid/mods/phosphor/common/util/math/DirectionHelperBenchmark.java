@@ -0,0 +1,53 @@
+package me.jellysquid.mods.phosphor.common.util.math;
+
+import net.minecraft.util.math.Direction;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Verifies the claim made by {@link DirectionHelper#getVecDirection(int, int, int)} against
+ * {@link Direction#fromVector(int, int, int)}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DirectionHelperBenchmark {
+    private int[] vectors;
+
+    @Setup
+    public void setup() {
+        Direction[] directions = Direction.values();
+        Random random = new Random(0xC0FFEEL);
+
+        this.vectors = new int[4096 * 3];
+
+        for (int i = 0; i < this.vectors.length; i += 3) {
+            Direction dir = directions[random.nextInt(directions.length)];
+
+            this.vectors[i] = dir.getOffsetX();
+            this.vectors[i + 1] = dir.getOffsetY();
+            this.vectors[i + 2] = dir.getOffsetZ();
+        }
+    }
+
+    @Benchmark
+    public void phosphor(Blackhole bh) {
+        int[] vectors = this.vectors;
+
+        for (int i = 0; i < vectors.length; i += 3) {
+            bh.consume(DirectionHelper.getVecDirection(vectors[i], vectors[i + 1], vectors[i + 2]));
+        }
+    }
+
+    @Benchmark
+    public void vanilla(Blackhole bh) {
+        int[] vectors = this.vectors;
+
+        for (int i = 0; i < vectors.length; i += 3) {
+            bh.consume(Direction.fromVector(vectors[i], vectors[i + 1], vectors[i + 2]));
+        }
+    }
+}
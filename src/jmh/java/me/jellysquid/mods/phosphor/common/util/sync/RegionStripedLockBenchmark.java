@@ -0,0 +1,110 @@
+package me.jellysquid.mods.phosphor.common.util.sync;
+
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import net.minecraft.util.math.ChunkSectionPos;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Measures the throughput of readers performing optimistic reads against the storage lock while a single writer
+ * repeatedly publishes changes to a small area of the world, as the light engine would while a player is building. A
+ * stripe count of 1 is equivalent to the previous single lock per world.
+ *
+ * Readers are spread over a 128x128 chunk area (a server with a few players spread apart), and the writer only modifies
+ * sections near the origin.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RegionStripedLockBenchmark {
+    private static final int RADIUS = 64;
+
+    @Param({ "1", "16", "64" })
+    public int stripes;
+
+    private RegionStripedLock lock;
+
+    private long[] readSections;
+    private long writeStripes;
+
+    // Stands in for the data guarded by the lock
+    private volatile int data;
+
+    @Setup
+    public void setup() {
+        this.lock = new RegionStripedLock(this.stripes);
+
+        Random random = new Random(0xC0FFEEL);
+
+        this.readSections = new long[4096];
+
+        for (int i = 0; i < this.readSections.length; i++) {
+            int x = random.nextInt(RADIUS * 2) - RADIUS;
+            int z = random.nextInt(RADIUS * 2) - RADIUS;
+
+            this.readSections[i] = ChunkSectionPos.asLong(x, random.nextInt(16), z);
+        }
+
+        LongSet modified = new LongOpenHashSet();
+
+        for (int x = -1; x <= 1; x++) {
+            for (int z = -1; z <= 1; z++) {
+                modified.add(ChunkSectionPos.asLong(x, 4, z));
+            }
+        }
+
+        this.writeStripes = this.lock.getStripeMask(modified);
+    }
+
+    @State(Scope.Thread)
+    public static class ReaderState {
+        private int idx;
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(7)
+    public void read(ReaderState state, Blackhole bh) {
+        long section = this.readSections[state.idx++ & (this.readSections.length - 1)];
+
+        StampedLock lock = this.lock.getLock(section);
+
+        long stamp = lock.tryOptimisticRead();
+
+        if (stamp != 0L) {
+            int value = this.data;
+
+            if (lock.validate(stamp)) {
+                bh.consume(value);
+
+                return;
+            }
+        }
+
+        stamp = lock.readLock();
+
+        try {
+            bh.consume(this.data);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(1)
+    public void write() {
+        this.lock.lockStripes(this.writeStripes);
+
+        try {
+            this.data++;
+        } finally {
+            this.lock.unlockStripes(this.writeStripes);
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package me.jellysquid.mods.phosphor.common.util.sync;
+
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import me.jellysquid.mods.phosphor.common.util.collections.DoubleBufferedLong2IntHashMap;
+import me.jellysquid.mods.phosphor.common.util.collections.DoubleBufferedSectionColumnMap;
+import net.minecraft.util.math.ChunkSectionPos;
+import net.minecraft.world.chunk.ChunkNibbleArray;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Measures the throughput of readers performing optimistic reads of the column map of light arrays and the column
+ * height map while a single writer repeatedly publishes changes to them under the striped storage lock, in the same
+ * way as LightStorage#publishUncachedLightArrays. A stripe count of 1 is equivalent to the previous single lock per
+ * world.
+ *
+ * Every publish of a column changes its height and the contents of all of its light arrays together, such that a
+ * section below the height always contains the light level {@code height - 1}. Readers check this as they go and fail
+ * the run with an {@link IllegalStateException} if they ever combine the height of one publish with the light arrays
+ * of another.
+ *
+ * This only exercises the collections and the lock. Our mixins are not applied in a plain JMH fork, so it does not run
+ * SkyLightStorage#getLight itself.
+ *
+ * The columns span several regions, so that readers also run against publishes in other stripes of the lock.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class StripedSnapshotReadBenchmark {
+    // The columns are spread over four regions of 32x32 chunks
+    private static final int[] COLUMN_COORDS = { -33, -32, -1, 0, 1, 31, 32, 33 };
+
+    private static final int MIN_Y = DoubleBufferedSectionColumnMap.MIN_SECTION_Y;
+    private static final int MAX_Y = DoubleBufferedSectionColumnMap.MAX_SECTION_Y;
+
+    @Param({ "1", "16" })
+    public int stripes;
+
+    private RegionStripedLock lock;
+
+    // Stands in for the uncached storage, which is replaced by a new copy on every publish
+    private volatile Storage storage;
+
+    // Owned by the writer
+    private DoubleBufferedSectionColumnMap<ChunkNibbleArray> arrays;
+    private DoubleBufferedLong2IntHashMap heights;
+    private long[] columns;
+    private int[] generations;
+    private int nextColumn;
+
+    @Setup
+    public void setup() {
+        this.lock = new RegionStripedLock(this.stripes);
+
+        this.arrays = new DoubleBufferedSectionColumnMap<>(ChunkNibbleArray[]::new);
+        this.heights = new DoubleBufferedLong2IntHashMap();
+        this.heights.defaultReturnValueSync(Integer.MIN_VALUE + 1);
+
+        this.columns = new long[COLUMN_COORDS.length * COLUMN_COORDS.length];
+        this.generations = new int[this.columns.length];
+
+        int i = 0;
+
+        for (int x : COLUMN_COORDS) {
+            for (int z : COLUMN_COORDS) {
+                this.columns[i++] = ChunkSectionPos.asLong(x, 0, z);
+            }
+        }
+
+        for (int j = 0; j < this.columns.length; j++) {
+            this.update(j);
+        }
+
+        this.publishChanges();
+    }
+
+    private static class Storage {
+        final DoubleBufferedSectionColumnMap<ChunkNibbleArray> arrays;
+        final DoubleBufferedLong2IntHashMap heights;
+
+        Storage(DoubleBufferedSectionColumnMap<ChunkNibbleArray> arrays, DoubleBufferedLong2IntHashMap heights) {
+            this.arrays = arrays;
+            this.heights = heights;
+        }
+    }
+
+    /**
+     * Replaces the light arrays of a column and changes its height. The sections below the height are filled with the
+     * level {@code height - 1}, and the sections above it are removed.
+     */
+    private void update(int idx) {
+        long column = this.columns[idx];
+
+        // The light level of each section must fit in a nibble
+        int height = 1 + (++this.generations[idx] % 16);
+
+        byte[] bytes = new byte[2048];
+        Arrays.fill(bytes, (byte) ((height - 1) | ((height - 1) << 4)));
+
+        for (int y = MIN_Y; y <= MAX_Y; y++) {
+            long pos = ChunkSectionPos.offset(column, 0, y, 0);
+
+            if (y < height) {
+                // Published arrays are never modified, so each section gets a new one
+                this.arrays.putSync(pos, new ChunkNibbleArray(bytes.clone()));
+            } else if (this.arrays.containsSync(pos)) {
+                this.arrays.removeSync(pos);
+            }
+        }
+
+        this.heights.putSync(column, height);
+    }
+
+    private void publishChanges() {
+        LongSet modified = new LongOpenHashSet(this.arrays.getPendingKeysSync());
+        modified.addAll(this.heights.getPendingKeysSync());
+
+        long stripes = this.lock.getStripeMask(modified);
+
+        this.lock.lockStripes(stripes);
+
+        try {
+            this.heights.flushChangesSync();
+            this.arrays.flushChangesSync();
+
+            this.storage = new Storage(this.arrays, this.heights);
+        } finally {
+            this.lock.unlockStripes(stripes);
+        }
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(1)
+    public void publish() {
+        // Publishes usually contain changes to a few neighbouring columns
+        int idx = this.nextColumn;
+
+        this.update(idx);
+        this.update((idx + 1) % this.columns.length);
+
+        this.nextColumn = (idx + 2) % this.columns.length;
+
+        this.publishChanges();
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(7)
+    public int getLight() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        long column = this.columns[random.nextInt(this.columns.length)];
+        int y = random.nextInt(MAX_Y - MIN_Y + 1) + MIN_Y;
+        int localIdx = random.nextInt(16 * 16 * 16);
+
+        StampedLock lock = this.lock.getLock(column);
+
+        long stamp = lock.tryOptimisticRead();
+
+        if (stamp != 0L) {
+            Storage storage = this.storage;
+
+            int height = storage.heights.getAsync(column);
+            ChunkNibbleArray[] sections = storage.arrays.getColumnAsync(column);
+
+            if (lock.validate(stamp)) {
+                return check(column, y, localIdx, height, sections);
+            }
+        }
+
+        stamp = lock.readLock();
+
+        try {
+            Storage storage = this.storage;
+
+            return check(column, y, localIdx, storage.heights.getAsync(column), storage.arrays.getColumnAsync(column));
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private static int check(long column, int y, int localIdx, int height, ChunkNibbleArray[] sections) {
+        if (height < 1 || height > 16) {
+            throw fail(column, "height " + height + " was never published");
+        }
+
+        if (sections == null) {
+            throw fail(column, "no light arrays were visible for height " + height);
+        }
+
+        ChunkNibbleArray array = sections[y - MIN_Y];
+
+        if (y >= height) {
+            if (array != null) {
+                throw fail(column, "section " + y + " is still present above height " + height);
+            }
+
+            return 15;
+        }
+
+        if (array == null) {
+            throw fail(column, "section " + y + " is missing below height " + height);
+        }
+
+        int level = array.get(localIdx & 15, localIdx >> 8, (localIdx >> 4) & 15);
+
+        if (level != height - 1) {
+            throw fail(column, "section " + y + " has light level " + level + " but the column's height is " + height);
+        }
+
+        return level;
+    }
+
+    private static IllegalStateException fail(long column, String reason) {
+        return new IllegalStateException("Torn read of column [" + ChunkSectionPos.getX(column) + ", " +
+                ChunkSectionPos.getZ(column) + "]: " + reason);
+    }
+}
@@ -1,9 +1,94 @@
 package me.jellysquid.mods.phosphor.common;
 
+import me.jellysquid.mods.phosphor.common.metrics.JfrSupport;
+import me.jellysquid.mods.phosphor.common.metrics.LightEngineMetrics;
 import net.fabricmc.api.ModInitializer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 @SuppressWarnings("unused")
 public class PhosphorMod implements ModInitializer {
+    public static final Logger LOGGER = LogManager.getLogger("Phosphor");
+
+    // The file which light engine metrics are written to, or null if they are only logged
+    private static Path metricsFile;
+
     @Override
-    public void onInitialize() { }
+    public void onInitialize() {
+        if (LightEngineMetrics.ENABLED) {
+            this.initMetrics();
+        }
+    }
+
+    private void initMetrics() {
+        LOGGER.info("Light engine metrics are enabled, this may reduce performance slightly");
+
+        if (JfrSupport.isAvailable()) {
+            JfrSupport.registerEvents();
+        }
+
+        String file = System.getProperty("phosphor.metrics.file");
+
+        if (file == null) {
+            return;
+        }
+
+        Path path = Paths.get(file);
+        metricsFile = path;
+
+        int interval = Math.max(0, Integer.getInteger("phosphor.metrics.interval", 60));
+
+        // Keep the file up to date so that the metrics can be read while the game is running
+        if (interval > 0) {
+            ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(task -> {
+                Thread thread = new Thread(task, "Phosphor metrics writer");
+                thread.setDaemon(true);
+
+                return thread;
+            });
+
+            executor.scheduleAtFixedRate(() -> {
+                try {
+                    LightEngineMetrics.writeJson(path);
+                } catch (IOException e) {
+                    LOGGER.warn("Failed to write light engine metrics to {}", path, e);
+                }
+            }, interval, interval, TimeUnit.SECONDS);
+        }
+
+        // The server normally writes the file when it stops, but the game may exit without stopping it. Log4j may have
+        // been shut down by its own hook at this point, so failures are reported on stderr instead.
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                LightEngineMetrics.writeJson(path);
+            } catch (IOException e) {
+                System.err.println("[Phosphor] Failed to write light engine metrics to " + path + ": " + e);
+            }
+        }, "Phosphor metrics shutdown writer"));
+    }
+
+    /**
+     * Logs a summary of the light engine metrics and writes them to the metrics file, if one was configured. This is
+     * called whenever a server stops.
+     */
+    public static void dumpMetrics() {
+        LightEngineMetrics.dump(LOGGER);
+
+        Path path = metricsFile;
+
+        if (path != null) {
+            try {
+                LightEngineMetrics.writeJson(path);
+            } catch (IOException e) {
+                LOGGER.warn("Failed to write light engine metrics to {}", path, e);
+            }
+        }
+    }
 }
@@ -1,9 +1,21 @@
 package me.jellysquid.mods.phosphor.common.block;
 
+import net.minecraft.util.math.Direction;
 import net.minecraft.util.shape.VoxelShape;
 
 public interface BlockStateLightInfo {
     VoxelShape[] getExtrudedFaces();
 
     int getLightSubtracted();
+
+    /**
+     * Returns the coverage masks of each extruded face, or null if the block has no extruded faces. The mask of each
+     * face is stored at the offset {@code dir.ordinal() * LightUtil.FACE_COVERAGE_WORDS}.
+     */
+    long[] getFaceCoverage();
+
+    /**
+     * Returns true if the coverage mask of the face in direction {@param dir} represents the face's shape exactly.
+     */
+    boolean hasExactFaceCoverage(Direction dir);
 }
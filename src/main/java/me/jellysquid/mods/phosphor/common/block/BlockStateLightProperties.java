@@ -0,0 +1,93 @@
+package me.jellysquid.mods.phosphor.common.block;
+
+import me.jellysquid.mods.phosphor.common.util.LightUtil;
+import net.minecraft.block.BlockState;
+import net.minecraft.util.math.Direction;
+import net.minecraft.util.shape.VoxelShape;
+import net.minecraft.util.shape.VoxelShapes;
+
+/**
+ * The light properties of a block state packed into a single integer, which is computed once when the shape cache of
+ * the state is initialized. This allows the light propagation loop to read everything it needs about a block state with
+ * a single field load, instead of chasing pointers through the state's shape cache.
+ *
+ * The layout of the packed value is as follows:
+ * - Bits 0-3: The amount of light subtracted by (the opacity of) the block
+ * - Bits 4-7: The luminance of the block
+ * - Bits 8-13: A bit for each face (indexed by {@link Direction#ordinal()}) which is entirely covered by the block's
+ *   culling shape
+ * - Bit 14: Set if the block has sided transparency, and as such, its shape must be considered
+ * - Bit 15: Set if the properties were computed. Block states with dynamic bounds do not have a shape cache and their
+ *   properties may depend on the world, so they must be queried each time.
+ */
+public final class BlockStateLightProperties {
+    private static final int OPACITY_SHIFT = 0;
+    private static final int LUMINANCE_SHIFT = 4;
+    private static final int FULL_FACES_SHIFT = 8;
+
+    private static final int SIDED_TRANSPARENCY_FLAG = 1 << 14;
+    private static final int CACHED_FLAG = 1 << 15;
+
+    /**
+     * The properties of a block state which has not been (or cannot be) cached.
+     */
+    public static final int UNCACHED = 0;
+
+    private BlockStateLightProperties() {
+
+    }
+
+    /**
+     * Computes the packed light properties of the block state. The shape cache of the state must have been initialized.
+     */
+    public static int compute(BlockState state) {
+        BlockStateLightInfo info = ((BlockStateLightInfoAccess) state).getLightInfo();
+
+        if (info == null) {
+            return UNCACHED;
+        }
+
+        int props = CACHED_FLAG;
+        props |= (info.getLightSubtracted() & 15) << OPACITY_SHIFT;
+        props |= (state.getLuminance() & 15) << LUMINANCE_SHIFT;
+
+        if (state.hasSidedTransparency()) {
+            props |= SIDED_TRANSPARENCY_FLAG;
+
+            VoxelShape[] faces = info.getExtrudedFaces();
+
+            if (faces != null) {
+                for (Direction dir : Direction.values()) {
+                    if (LightUtil.unionCoversFullCube(faces[dir.ordinal()], VoxelShapes.empty())) {
+                        props |= 1 << (FULL_FACES_SHIFT + dir.ordinal());
+                    }
+                }
+            }
+        }
+
+        return props;
+    }
+
+    public static boolean isCached(int props) {
+        return (props & CACHED_FLAG) != 0;
+    }
+
+    public static int getOpacity(int props) {
+        return (props >>> OPACITY_SHIFT) & 15;
+    }
+
+    public static int getLuminance(int props) {
+        return (props >>> LUMINANCE_SHIFT) & 15;
+    }
+
+    public static boolean hasSidedTransparency(int props) {
+        return (props & SIDED_TRANSPARENCY_FLAG) != 0;
+    }
+
+    /**
+     * Returns true if the face of the block on side {@param dir} is entirely covered by the block's shape.
+     */
+    public static boolean isFullFace(int props, Direction dir) {
+        return (props & (1 << (FULL_FACES_SHIFT + dir.ordinal()))) != 0;
+    }
+}
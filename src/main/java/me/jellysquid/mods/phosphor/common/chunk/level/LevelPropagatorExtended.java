@@ -15,4 +15,13 @@ public interface LevelPropagatorExtended {
      * block state belonging to {@param sourceId}.
      */
     int getPropagatedLevel(long sourceId, BlockState sourceState, long targetId, int level);
+
+    /**
+     * Mirrors {@link LevelPropagator#propagateLevel(long, long, int, boolean)} for a caller which has already computed
+     * the level propagated to {@param targetId}, and which knows the current and pending levels of it. This allows
+     * the caller to read these from its own data structures.
+     *
+     * @param pendingLevel The pending level of the target, or 0xFF if it has no pending update
+     */
+    void propagateResolvedLevel(long sourceId, long targetId, int propagatedLevel, int currentLevel, int pendingLevel, boolean decrease);
 }
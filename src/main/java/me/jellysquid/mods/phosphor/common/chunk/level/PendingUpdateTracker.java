@@ -0,0 +1,27 @@
+package me.jellysquid.mods.phosphor.common.chunk.level;
+
+public interface PendingUpdateTracker {
+    /**
+     * Removes every pending update for the block positions within the specified chunk section. This only visits the
+     * pending updates which belong to the section, rather than every block position or every pending update.
+     */
+    void removePendingUpdatesInSection(long sectionPos);
+
+    /**
+     * Returns true if the given position has a pending update.
+     */
+    boolean hasPendingUpdate(long id);
+
+    /**
+     * Counts work which was done without going through the queue of pending updates against the step budget of the
+     * current call to LevelPropagator#applyPendingUpdates, as if {@param steps} updates had been taken from the queue.
+     */
+    void consumeSteps(int steps);
+
+    /**
+     * Reads the pending level of every block adjacent to {@param id} into {@param levels}, indexed by
+     * {@link net.minecraft.util.math.Direction#ordinal()}, where 0xFF (as an unsigned byte) means the block has no
+     * pending update. Every adjacent block must be within the same chunk section as {@param id}.
+     */
+    void getPendingUpdatesOfNeighbors(long id, byte[] levels);
+}
@@ -0,0 +1,31 @@
+package me.jellysquid.mods.phosphor.common.chunk.light;
+
+public interface CompactChunkNibbleArray {
+    /**
+     * Returns true if every value in this array is the same, in which case no backing array is allocated and the value
+     * can be obtained through {@link CompactChunkNibbleArray#getUniformLevel()}.
+     */
+    boolean isUniform();
+
+    /**
+     * Returns the value of every entry in this array, or -1 if the array is not uniform.
+     */
+    int getUniformLevel();
+
+    /**
+     * Discards the contents of this array and replaces every entry with {@param level}.
+     */
+    void setUniform(int level);
+
+    /**
+     * Discards the contents of this array and replaces them with the dense nibble array {@param arr}, which will be owned
+     * by this array from now on.
+     */
+    void setDense(byte[] arr);
+
+    /**
+     * Discards the contents of this array and replaces them with those of {@param array}, which will be owned by this
+     * array from now on.
+     */
+    void setPacked(PackedNibbleArray array);
+}
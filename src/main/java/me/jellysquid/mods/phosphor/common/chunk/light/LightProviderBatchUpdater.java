@@ -0,0 +1,29 @@
+package me.jellysquid.mods.phosphor.common.chunk.light;
+
+import it.unimi.dsi.fastutil.longs.LongCollection;
+
+/**
+ * Allows many block changes to be submitted to the light engine at once, such as when filling a large region or
+ * placing a structure. This is equivalent to calling {@link net.minecraft.world.chunk.light.ChunkLightProvider#checkBlock}
+ * for every changed position, but each position (and its neighbors) will only be queued once, and the positions are
+ * queued section by section to make the most of the lighting engine's caches.
+ *
+ * Like checkBlock, the light providers and the client's lighting provider must only be called from the thread which
+ * owns the lighting engine. On the server, the lighting provider instead queues each batch as a task for the lighting
+ * thread, just as vanilla does for checkBlock, so it can be called from the server thread. The queued updates are
+ * processed by the next call to doLightUpdates, which will notify the chunk provider once for each section whose light
+ * changed.
+ */
+public interface LightProviderBatchUpdater {
+    /**
+     * Queues light checks for each of the given block positions.
+     *
+     * @param positions The long-encoded positions of each block which has changed
+     */
+    void checkBlocks(LongCollection positions);
+
+    /**
+     * Queues light checks for every block within the given volume (inclusive on both ends).
+     */
+    void checkBlocks(int minX, int minY, int minZ, int maxX, int maxY, int maxZ);
+}
@@ -3,6 +3,7 @@ package me.jellysquid.mods.phosphor.common.chunk.light;
 import net.minecraft.block.BlockState;
 import net.minecraft.util.math.Direction;
 import net.minecraft.util.shape.VoxelShape;
+import net.minecraft.world.chunk.ChunkSection;
 
 public interface LightProviderBlockAccess {
     /**
@@ -12,6 +13,13 @@ public interface LightProviderBlockAccess {
      */
     BlockState getBlockStateForLighting(int x, int y, int z);
 
+    /**
+     * Returns the chunk section containing the block at the specified coordinates, or null if the section is empty or
+     * its chunk is not available. The block states of the section are those which would be returned by
+     * {@link LightProviderBlockAccess#getBlockStateForLighting(int, int, int)}.
+     */
+    ChunkSection getSectionForLighting(int x, int y, int z);
+
     /**
      * Returns the amount of light which is blocked at the specified coordinates by the BlockState.
      */
@@ -23,4 +31,18 @@ public interface LightProviderBlockAccess {
      */
     VoxelShape getOpaqueShape(BlockState state, int x, int y, int z, Direction dir);
 
+    /**
+     * Returns true if light travelling in direction {@param dir} from one block to the block adjacent to it is blocked
+     * by the union of the faces the two blocks share. This is equivalent to checking if the union of the opaque shapes
+     * (see {@link LightProviderBlockAccess#getOpaqueShape(BlockState, int, int, int, Direction)}) of the two faces
+     * covers a full cube.
+     */
+    boolean isFaceOccluded(BlockState fromState, int fromX, int fromY, int fromZ,
+                           BlockState toState, int toX, int toY, int toZ, Direction dir);
+
+    /**
+     * Equivalent to LightStorage#hasLight(long) for the light storage of this provider, but may be faster when called
+     * repeatedly for the sections of the same chunk columns.
+     */
+    boolean hasSectionLight(long sectionPos);
 }
@@ -0,0 +1,18 @@
+package me.jellysquid.mods.phosphor.common.chunk.light;
+
+import it.unimi.dsi.fastutil.longs.LongSet;
+import net.minecraft.world.chunk.ChunkNibbleArray;
+
+public interface LightStorageAccess {
+    /**
+     * Bridge method to LightStorage#dirtySections, which contains the sections whose light has changed since the last
+     * call to LightStorage#notifyChunkProvider(). The returned set must not be modified.
+     */
+    LongSet getDirtySections();
+
+    /**
+     * Bridge method to LightStorage#getLightArray(long, boolean) for the light arrays which are owned by the light
+     * engine, as read by LightStorage#get(long). The returned array must not be written into.
+     */
+    ChunkNibbleArray getCachedLightArray(long sectionPos);
+}
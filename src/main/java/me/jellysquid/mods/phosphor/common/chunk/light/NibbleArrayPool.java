@@ -0,0 +1,61 @@
+package me.jellysquid.mods.phosphor.common.chunk.light;
+
+import me.jellysquid.mods.phosphor.common.metrics.LightEngineMetrics;
+
+/**
+ * A bounded pool of the 2048-byte backing arrays used by ChunkNibbleArray. Only the backing arrays of light arrays which
+ * were discarded before ever being published to other threads are returned to the pool, as nothing tracks when readers
+ * are done with published arrays.
+ *
+ * The maximum number of retained arrays can be configured with {@code -Dphosphor.nibbleArrayPoolSize=<n>}, and a size
+ * of zero disables pooling.
+ *
+ * Each light array map owned by a light storage has its own pool, which is confined to the owner of the map in the same
+ * way as the arrays it retires. The pool is not thread-safe and must never be accessed by readers of the map.
+ *
+ * Arrays must only be released once nothing else can access them, see {@link RecyclableChunkNibbleArray}.
+ */
+public class NibbleArrayPool {
+    public static final int ARRAY_SIZE = 2048;
+
+    private static final int MAX_SIZE = Math.max(0, Integer.getInteger("phosphor.nibbleArrayPoolSize", 256));
+
+    private final byte[][] pool = new byte[MAX_SIZE][];
+    private int size;
+
+    /**
+     * Returns an array of {@link NibbleArrayPool#ARRAY_SIZE} bytes. The contents of the array are undefined, and the
+     * caller must overwrite every element.
+     */
+    public byte[] allocate() {
+        if (this.size == 0) {
+            if (LightEngineMetrics.ENABLED) {
+                LightEngineMetrics.NIBBLE_ARRAY_POOL_MISSES.increment();
+            }
+
+            return new byte[ARRAY_SIZE];
+        }
+
+        if (LightEngineMetrics.ENABLED) {
+            LightEngineMetrics.NIBBLE_ARRAY_POOL_HITS.increment();
+        }
+
+        byte[] arr = this.pool[--this.size];
+        this.pool[this.size] = null;
+
+        return arr;
+    }
+
+    /**
+     * Returns an array to the pool. If the pool is full, the array is discarded.
+     */
+    public void release(byte[] arr) {
+        if (arr.length != ARRAY_SIZE) {
+            throw new IllegalArgumentException("Array is not of the expected size");
+        }
+
+        if (this.size < this.pool.length) {
+            this.pool[this.size++] = arr;
+        }
+    }
+}
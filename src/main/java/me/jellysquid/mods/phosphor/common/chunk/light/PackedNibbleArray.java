@@ -0,0 +1,182 @@
+package me.jellysquid.mods.phosphor.common.chunk.light;
+
+/**
+ * A compact alternative to the dense 2048-byte layout of ChunkNibbleArray for sections which only contain a few distinct
+ * light levels, such as sky light sections which are partially shadowed or block light sections with a single light
+ * source at their edge. Each entry is stored as an index into a small palette of light levels, using either 1 bit
+ * (512 bytes) or 2 bits (1024 bytes) per entry.
+ *
+ * If a value is written which does not fit in the largest palette, {@link PackedNibbleArray#set(int, int)} fails and the
+ * owner is expected to switch back to the dense layout.
+ *
+ * Entries are indexed using the same layout as ChunkNibbleArray.
+ */
+public final class PackedNibbleArray {
+    private static final int SIZE = 16 * 16 * 16;
+
+    // The largest number of bits per entry which will be used before the dense layout is preferred
+    private static final int MAX_BITS = 2;
+
+    private final byte[] palette = new byte[1 << MAX_BITS];
+    private int paletteSize;
+
+    private long[] words;
+    private int bits;
+
+    private PackedNibbleArray(int bits) {
+        this.bits = bits;
+        this.words = new long[(SIZE * bits) / 64];
+    }
+
+    /**
+     * Creates a packed array in which every entry is initially {@param level}.
+     */
+    public static PackedNibbleArray create(int level) {
+        PackedNibbleArray array = new PackedNibbleArray(1);
+        array.palette[0] = (byte) level;
+        array.paletteSize = 1;
+
+        return array;
+    }
+
+    /**
+     * Tries to pack the given dense nibble array (see ChunkNibbleArray#asByteArray()). If the array contains more light
+     * levels than can be held by the largest palette, null is returned.
+     */
+    public static PackedNibbleArray tryPack(byte[] nibbles) {
+        int levels = 0;
+
+        // Find the set of distinct light levels, bailing out as soon as we know packing would fail
+        for (byte b : nibbles) {
+            levels |= (1 << (b & 15)) | (1 << ((b >> 4) & 15));
+
+            if (Integer.bitCount(levels) > (1 << MAX_BITS)) {
+                return null;
+            }
+        }
+
+        PackedNibbleArray array = new PackedNibbleArray(Integer.bitCount(levels) <= 2 ? 1 : 2);
+
+        while (levels != 0) {
+            array.palette[array.paletteSize++] = (byte) Integer.numberOfTrailingZeros(levels);
+
+            levels &= levels - 1;
+        }
+
+        for (int i = 0; i < SIZE; i++) {
+            int level = (nibbles[i >> 1] >>> ((i & 1) << 2)) & 15;
+
+            array.setIndex(i, array.getPaletteIndex(level));
+        }
+
+        return array;
+    }
+
+    public int get(int idx) {
+        int bits = this.bits;
+        int bitIdx = idx * bits;
+
+        int paletteIdx = (int) (this.words[bitIdx >> 6] >>> (bitIdx & 63)) & ((1 << bits) - 1);
+
+        return this.palette[paletteIdx];
+    }
+
+    /**
+     * Sets the entry at {@param idx} to {@param level}, growing the palette if needed.
+     *
+     * @return False if the palette is full and the value could not be stored, otherwise true
+     */
+    public boolean set(int idx, int level) {
+        int paletteIdx = this.getPaletteIndex(level);
+
+        if (paletteIdx < 0) {
+            if (this.paletteSize >= (1 << this.bits)) {
+                if (this.bits >= MAX_BITS) {
+                    return false;
+                }
+
+                this.resize(this.bits << 1);
+            }
+
+            paletteIdx = this.paletteSize++;
+            this.palette[paletteIdx] = (byte) level;
+        }
+
+        this.setIndex(idx, paletteIdx);
+
+        return true;
+    }
+
+    /**
+     * Returns a dense nibble array containing the same values as this array, in the same layout as ChunkNibbleArray.
+     */
+    public byte[] toByteArray() {
+        byte[] nibbles = new byte[SIZE / 2];
+        this.copyTo(nibbles);
+
+        return nibbles;
+    }
+
+    /**
+     * Overwrites every element of the dense nibble array {@param nibbles} with the values of this array.
+     */
+    public void copyTo(byte[] nibbles) {
+        for (int i = 0; i < nibbles.length; i++) {
+            nibbles[i] = (byte) (this.get(i << 1) | (this.get((i << 1) | 1) << 4));
+        }
+    }
+
+    public PackedNibbleArray copy() {
+        PackedNibbleArray copy = new PackedNibbleArray(this.bits);
+        System.arraycopy(this.words, 0, copy.words, 0, this.words.length);
+        System.arraycopy(this.palette, 0, copy.palette, 0, this.paletteSize);
+        copy.paletteSize = this.paletteSize;
+
+        return copy;
+    }
+
+    /**
+     * Returns the number of bytes used to store the entries of this array.
+     */
+    public int getStorageSize() {
+        return this.words.length * 8;
+    }
+
+    private int getPaletteIndex(int level) {
+        byte[] palette = this.palette;
+
+        for (int i = 0; i < this.paletteSize; i++) {
+            if (palette[i] == level) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    private void setIndex(int idx, int paletteIdx) {
+        int bits = this.bits;
+        int bitIdx = idx * bits;
+        long mask = ((1L << bits) - 1) << (bitIdx & 63);
+
+        long[] words = this.words;
+        int wordIdx = bitIdx >> 6;
+
+        words[wordIdx] = (words[wordIdx] & ~mask) | (((long) paletteIdx << (bitIdx & 63)) & mask);
+    }
+
+    private void resize(int bits) {
+        long[] prevWords = this.words;
+        int prevBits = this.bits;
+
+        this.bits = bits;
+        this.words = new long[(SIZE * bits) / 64];
+
+        for (int i = 0; i < SIZE; i++) {
+            int bitIdx = i * prevBits;
+            int paletteIdx = (int) (prevWords[bitIdx >> 6] >>> (bitIdx & 63)) & ((1 << prevBits) - 1);
+
+            this.setIndex(i, paletteIdx);
+        }
+    }
+}
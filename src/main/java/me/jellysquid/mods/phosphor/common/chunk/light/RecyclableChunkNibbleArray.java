@@ -0,0 +1,62 @@
+package me.jellysquid.mods.phosphor.common.chunk.light;
+
+import net.minecraft.world.chunk.ChunkNibbleArray;
+
+/**
+ * Tracks when the backing array of a ChunkNibbleArray can be returned to the {@link NibbleArrayPool}.
+ *
+ * Once a light array has been published to other threads through a copy of its light array map, any number of readers
+ * may hold onto it for an unbounded amount of time (for example, to serialize a chunk or to build a light update
+ * packet), and nothing tracks when they are done with it. Published arrays are immutable from then on, and as such,
+ * they are never recycled.
+ *
+ * Only arrays which were created and then discarded by the owner of a light array map before they were ever published
+ * are recycled. The owner retires such an array with the number of times it has published the map so far, and
+ * recycles it after the next publish unless the array was put back into use (and possibly published) in the meantime.
+ *
+ * Backing arrays which have been handed out through ChunkNibbleArray#asByteArray() are never recycled, as they may be
+ * retained by other code indefinitely.
+ *
+ * Arrays which are owned by a light array map allocate their backing arrays from the pool of the map's owner, and only
+ * ever use it while they are unpublished, as only the owner accesses them until then.
+ */
+public interface RecyclableChunkNibbleArray {
+    /**
+     * Attaches the pool of the owner of the light array map this array is being put into. Backing arrays needed by
+     * later writes are allocated from the pool, and are returned to it when this array is recycled.
+     */
+    void setPool(NibbleArrayPool pool);
+
+    /**
+     * Returns a copy of this array for the owner of a light array map, which allocates from {@param pool} as if
+     * {@link RecyclableChunkNibbleArray#setPool(NibbleArrayPool)} had been called on it.
+     */
+    ChunkNibbleArray copy(NibbleArrayPool pool);
+
+    /**
+     * Marks this array as visible to other threads. This must be called by the owner of the array's map before the copy
+     * of the map containing it is published.
+     */
+    void markPublished();
+
+    /**
+     * Returns true if this array has been published to other threads, after which it must never be modified or recycled.
+     */
+    boolean isPublished();
+
+    /**
+     * Marks this array as no longer used by the owner of its light array map.
+     */
+    void retire(long generation);
+
+    /**
+     * Marks this array as being in use again, cancelling any previous retirement.
+     */
+    void reinstate();
+
+    /**
+     * Returns the backing array to the pool if this array is still retired since {@param generation} and has never been
+     * published. Afterwards, this array must not be used again.
+     */
+    void recycle(long generation);
+}
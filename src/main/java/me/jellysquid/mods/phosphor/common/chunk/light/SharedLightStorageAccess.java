@@ -11,8 +11,12 @@ public interface SharedLightStorageAccess<M extends ChunkToNibbleArrayMap<M>> {
     M getStorage();
 
     /**
-     * Returns the lock which wraps the {@link SharedLightStorageAccess#getStorage()}. Locking should always be
-     * performed when accessing values in the aforementioned storage.
+     * Returns the lock which wraps the data of the region containing {@param sectionPos} in
+     * {@link SharedLightStorageAccess#getStorage()}. Locking should always be performed when accessing values in the
+     * aforementioned storage. As the storage is never mutated after it has been published, readers may use an optimistic
+     * read and only fall back to a read lock if validation fails.
+     *
+     * Only the data belonging to the same region is guaranteed to be consistent while holding the lock.
      */
-    StampedLock getStorageLock();
+    StampedLock getStorageLock(long sectionPos);
 }
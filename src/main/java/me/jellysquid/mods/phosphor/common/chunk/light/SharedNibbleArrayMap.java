@@ -1,6 +1,6 @@
 package me.jellysquid.mods.phosphor.common.chunk.light;
 
-import me.jellysquid.mods.phosphor.common.util.collections.DoubleBufferedLong2ObjectHashMap;
+import me.jellysquid.mods.phosphor.common.util.collections.DoubleBufferedSectionColumnMap;
 import net.minecraft.world.chunk.ChunkNibbleArray;
 
 public interface SharedNibbleArrayMap {
@@ -19,5 +19,11 @@ public interface SharedNibbleArrayMap {
     /**
      * Returns the queue of pending changes for this map.
      */
-    DoubleBufferedLong2ObjectHashMap<ChunkNibbleArray> getUpdateQueue();
+    DoubleBufferedSectionColumnMap<ChunkNibbleArray> getUpdateQueue();
+
+    /**
+     * Called by the owner of this map after a copy of it has been published to other threads. Light arrays which were
+     * removed from this map long enough ago to no longer be visible to readers will be recycled.
+     */
+    void onPublished();
 }
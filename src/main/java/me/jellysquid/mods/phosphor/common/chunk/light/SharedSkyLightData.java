@@ -2,6 +2,7 @@ package me.jellysquid.mods.phosphor.common.chunk.light;
 
 import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
 import me.jellysquid.mods.phosphor.common.util.collections.DoubleBufferedLong2IntHashMap;
+import me.jellysquid.mods.phosphor.common.util.collections.DoubleBufferedLong2ObjectHashMap;
 
 public interface SharedSkyLightData {
     /**
@@ -9,6 +10,7 @@ public interface SharedSkyLightData {
      *
      * @param map The sync-view of the {@param queue}
      * @param queue The queue of light updates
+     * @param columnHeights The queue of column height updates
      */
-    void makeSharedCopy(Long2IntOpenHashMap map, DoubleBufferedLong2IntHashMap queue);
+    void makeSharedCopy(Long2IntOpenHashMap map, DoubleBufferedLong2IntHashMap queue, DoubleBufferedLong2ObjectHashMap<short[]> columnHeights);
 }
@@ -1,6 +1,7 @@
 package me.jellysquid.mods.phosphor.common.chunk.light;
 
 import me.jellysquid.mods.phosphor.common.util.collections.DoubleBufferedLong2IntHashMap;
+import me.jellysquid.mods.phosphor.common.util.collections.DoubleBufferedLong2ObjectHashMap;
 
 public interface SkyLightStorageDataAccess {
     /**
@@ -12,4 +13,27 @@ public interface SkyLightStorageDataAccess {
      * Returns the height map value for the given block column in the world.
      */
     int getHeight(long pos);
+
+    /**
+     * Returns the queue of changes to the height map.
+     */
+    DoubleBufferedLong2IntHashMap getHeightQueue();
+
+    /**
+     * Returns the lowest Y coordinate at and above which every block is fully sky-lit for each block column of the
+     * given chunk column, indexed by {@code (z << 4) | x}, or null if the chunk column has no light data. This is the
+     * view which has been published to other threads, and is consistent with the published light arrays.
+     */
+    short[] getColumnHeights(long pos);
+
+    /**
+     * Returns the queue of changes to the column heights.
+     */
+    DoubleBufferedLong2ObjectHashMap<short[]> getColumnHeightQueue();
+
+    /**
+     * Re-computes the column heights of every chunk column which contains changes that have not yet been published.
+     * This must be called by the owner before the light arrays are published.
+     */
+    void updateColumnHeights();
 }
@@ -0,0 +1,35 @@
+package me.jellysquid.mods.phosphor.common.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A monotonically increasing counter which can be cheaply incremented from many threads at once.
+ */
+public class Counter {
+    private final String name;
+    private final LongAdder value = new LongAdder();
+
+    public Counter(String name) {
+        this.name = name;
+    }
+
+    public void increment() {
+        this.value.increment();
+    }
+
+    public void add(long amount) {
+        this.value.add(amount);
+    }
+
+    public long get() {
+        return this.value.sum();
+    }
+
+    public void reset() {
+        this.value.reset();
+    }
+
+    public String getName() {
+        return this.name;
+    }
+}
@@ -0,0 +1,100 @@
+package me.jellysquid.mods.phosphor.common.metrics;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of non-negative values which can be cheaply recorded from many threads at once. Values are grouped into
+ * power-of-two buckets, so percentiles are only accurate to within a factor of two, which is more than enough to spot
+ * the spikes we are interested in.
+ */
+public class Histogram {
+    private static final int BUCKETS = 64;
+
+    private final String name;
+
+    // Bucket N contains the values in the range [2^(N-1), 2^N), with bucket 0 holding zero
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0L);
+
+    public Histogram(String name) {
+        this.name = name;
+
+        for (int i = 0; i < BUCKETS; i++) {
+            this.buckets[i] = new LongAdder();
+        }
+    }
+
+    public void record(long value) {
+        if (value < 0L) {
+            value = 0L;
+        }
+
+        this.buckets[Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(value))].increment();
+
+        this.count.increment();
+        this.sum.add(value);
+        this.max.accumulate(value);
+    }
+
+    public long getCount() {
+        return this.count.sum();
+    }
+
+    public long getSum() {
+        return this.sum.sum();
+    }
+
+    public long getMax() {
+        return this.max.get();
+    }
+
+    public double getMean() {
+        long count = this.getCount();
+
+        return count == 0L ? 0.0D : (double) this.getSum() / count;
+    }
+
+    /**
+     * Returns an upper bound for the given percentile of recorded values.
+     *
+     * @param percentile The percentile in the range [0, 1]
+     */
+    public long getPercentile(double percentile) {
+        long count = this.getCount();
+
+        if (count == 0L) {
+            return 0L;
+        }
+
+        long threshold = (long) Math.ceil(count * percentile);
+        long seen = 0L;
+
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += this.buckets[i].sum();
+
+            if (seen >= threshold) {
+                return i == 0 ? 0L : Math.min(this.getMax(), (1L << i) - 1L);
+            }
+        }
+
+        return this.getMax();
+    }
+
+    public void reset() {
+        for (LongAdder bucket : this.buckets) {
+            bucket.reset();
+        }
+
+        this.count.reset();
+        this.sum.reset();
+        this.max.reset();
+    }
+
+    public String getName() {
+        return this.name;
+    }
+}
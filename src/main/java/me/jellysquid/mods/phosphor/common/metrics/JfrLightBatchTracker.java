@@ -0,0 +1,156 @@
+package me.jellysquid.mods.phosphor.common.metrics;
+
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import jdk.jfr.EventType;
+import net.minecraft.util.math.ChunkSectionPos;
+import net.minecraft.world.BlockView;
+import net.minecraft.world.LightType;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.ChunkProvider;
+
+/**
+ * Records a {@link LightBatchEvent} for every batch of light updates which did any work. When the event is not enabled
+ * in the current recording, the only overhead is a single check at the start of each batch.
+ *
+ * This class references the JFR API and must only be loaded after checking {@link JfrSupport#isAvailable()}.
+ */
+class JfrLightBatchTracker extends LightBatchTracker {
+    private static final EventType EVENT_TYPE = EventType.getEventType(LightBatchEvent.class);
+
+    private final ChunkProvider chunkProvider;
+    private final String lightType;
+
+    private String worldName;
+
+    private LightBatchEvent event;
+
+    private int maxSteps;
+    private long startTime;
+
+    JfrLightBatchTracker(ChunkProvider chunkProvider, LightType lightType) {
+        this.chunkProvider = chunkProvider;
+        this.lightType = lightType.name();
+    }
+
+    @Override
+    public void beginBatch(int maxSteps) {
+        if (!EVENT_TYPE.isEnabled()) {
+            this.event = null;
+
+            return;
+        }
+
+        LightBatchEvent event = new LightBatchEvent();
+        event.begin();
+
+        this.event = event;
+        this.maxSteps = maxSteps;
+    }
+
+    @Override
+    public void beginPropagation() {
+        if (this.event != null) {
+            this.startTime = System.nanoTime();
+        }
+    }
+
+    @Override
+    public void endPropagation() {
+        if (this.event != null) {
+            this.event.propagationTime += System.nanoTime() - this.startTime;
+        }
+    }
+
+    @Override
+    public void beginArrayUpdate() {
+        if (this.event != null) {
+            this.startTime = System.nanoTime();
+        }
+    }
+
+    @Override
+    public void endArrayUpdate() {
+        if (this.event != null) {
+            this.event.arrayUpdateTime += System.nanoTime() - this.startTime;
+        }
+    }
+
+    @Override
+    public void onFlush(LongSet dirtySections) {
+        LightBatchEvent event = this.event;
+
+        if (event == null || dirtySections.isEmpty()) {
+            return;
+        }
+
+        int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, minZ = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE, maxZ = Integer.MIN_VALUE;
+
+        LongIterator it = dirtySections.iterator();
+
+        while (it.hasNext()) {
+            long pos = it.nextLong();
+
+            int x = ChunkSectionPos.getX(pos);
+            int y = ChunkSectionPos.getY(pos);
+            int z = ChunkSectionPos.getZ(pos);
+
+            minX = Math.min(minX, x);
+            minY = Math.min(minY, y);
+            minZ = Math.min(minZ, z);
+
+            maxX = Math.max(maxX, x);
+            maxY = Math.max(maxY, y);
+            maxZ = Math.max(maxZ, z);
+        }
+
+        event.dirtySections = dirtySections.size();
+
+        event.minSectionX = minX;
+        event.minSectionY = minY;
+        event.minSectionZ = minZ;
+
+        event.maxSectionX = maxX;
+        event.maxSectionY = maxY;
+        event.maxSectionZ = maxZ;
+    }
+
+    @Override
+    public void endBatch(int remainingSteps) {
+        LightBatchEvent event = this.event;
+
+        if (event == null) {
+            return;
+        }
+
+        this.event = null;
+
+        event.end();
+
+        event.updates = this.maxSteps - remainingSteps;
+
+        // Most calls do no work at all, and recording them would only bury the batches we care about
+        if ((event.updates == 0 && event.dirtySections == 0) || !event.shouldCommit()) {
+            return;
+        }
+
+        event.world = this.getWorldName();
+        event.lightType = this.lightType;
+        event.commit();
+    }
+
+    private String getWorldName() {
+        if (this.worldName == null) {
+            BlockView world = this.chunkProvider.getWorld();
+
+            if (world instanceof World) {
+                this.worldName = ((World) world).getRegistryKey().getValue().toString();
+            } else {
+                this.worldName = String.valueOf(world);
+            }
+        }
+
+        return this.worldName;
+    }
+}
@@ -0,0 +1,40 @@
+package me.jellysquid.mods.phosphor.common.metrics;
+
+import net.minecraft.world.LightType;
+import net.minecraft.world.chunk.ChunkProvider;
+
+/**
+ * Guards access to the Java Flight Recorder integration, which is only available on Java 11+ and Java 8u262+.
+ */
+public class JfrSupport {
+    private static final boolean AVAILABLE = checkAvailable();
+
+    private static boolean checkAvailable() {
+        try {
+            Class.forName("jdk.jfr.FlightRecorder", false, JfrSupport.class.getClassLoader());
+
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    public static boolean isAvailable() {
+        return AVAILABLE;
+    }
+
+    /**
+     * Registers all of our custom JFR events. This must only be called if {@link JfrSupport#isAvailable()} is true.
+     */
+    public static void registerEvents() {
+        LightEngineMetricsEvent.register();
+    }
+
+    /**
+     * Creates a tracker which records a {@link LightBatchEvent} for each batch of light updates. This must only be called
+     * if {@link JfrSupport#isAvailable()} is true.
+     */
+    static LightBatchTracker createBatchTracker(ChunkProvider chunkProvider, LightType lightType) {
+        return new JfrLightBatchTracker(chunkProvider, lightType);
+    }
+}
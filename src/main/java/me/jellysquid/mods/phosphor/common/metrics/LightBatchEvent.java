@@ -0,0 +1,65 @@
+package me.jellysquid.mods.phosphor.common.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * A Java Flight Recorder event which is emitted for every batch of light updates performed by a light provider. The
+ * duration of the event covers the whole batch, and the sections which were modified by it are given as a bounding box
+ * in section coordinates.
+ *
+ * This class references the JFR API and must only be loaded after checking {@link JfrSupport#isAvailable()}.
+ */
+@Name("phosphor.LightBatch")
+@Label("Light Update Batch")
+@Category({ "Phosphor", "Light Engine" })
+@Description("A batch of light updates performed by a light provider")
+@StackTrace(false)
+public class LightBatchEvent extends Event {
+    @Label("World")
+    public String world;
+
+    @Label("Light Type")
+    public String lightType;
+
+    @Label("Light Updates")
+    @Description("The number of queued light updates which were processed")
+    public int updates;
+
+    @Label("Propagation Time")
+    @Description("Time spent in LevelPropagator#applyPendingUpdates")
+    @Timespan(Timespan.NANOSECONDS)
+    public long propagationTime;
+
+    @Label("Array Update Time")
+    @Description("Time spent in LightStorage#updateLightArrays")
+    @Timespan(Timespan.NANOSECONDS)
+    public long arrayUpdateTime;
+
+    @Label("Dirty Sections")
+    @Description("The number of sections whose light changed and were flushed to the chunk provider")
+    public int dirtySections;
+
+    @Label("Min Section X")
+    public int minSectionX;
+
+    @Label("Min Section Y")
+    public int minSectionY;
+
+    @Label("Min Section Z")
+    public int minSectionZ;
+
+    @Label("Max Section X")
+    public int maxSectionX;
+
+    @Label("Max Section Y")
+    public int maxSectionY;
+
+    @Label("Max Section Z")
+    public int maxSectionZ;
+}
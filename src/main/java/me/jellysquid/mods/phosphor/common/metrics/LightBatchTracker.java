@@ -0,0 +1,56 @@
+package me.jellysquid.mods.phosphor.common.metrics;
+
+import it.unimi.dsi.fastutil.longs.LongSet;
+import net.minecraft.world.LightType;
+import net.minecraft.world.chunk.ChunkProvider;
+
+/**
+ * Receives the progress of each batch of light updates performed by a light provider, see
+ * ChunkLightProvider#doLightUpdates(int, boolean, boolean). Each light provider owns its own tracker and only ever uses
+ * it from the thread performing light updates.
+ *
+ * The base implementation does nothing. When Java Flight Recorder is available, {@link JfrLightBatchTracker} is used
+ * instead to emit a {@link LightBatchEvent} for each batch.
+ */
+public class LightBatchTracker {
+    private static final LightBatchTracker NONE = new LightBatchTracker();
+
+    public static LightBatchTracker create(ChunkProvider chunkProvider, LightType lightType) {
+        if (JfrSupport.isAvailable()) {
+            return JfrSupport.createBatchTracker(chunkProvider, lightType);
+        }
+
+        return NONE;
+    }
+
+    public void beginBatch(int maxSteps) {
+
+    }
+
+    public void beginPropagation() {
+
+    }
+
+    public void endPropagation() {
+
+    }
+
+    public void beginArrayUpdate() {
+
+    }
+
+    public void endArrayUpdate() {
+
+    }
+
+    /**
+     * Called before the dirty sections are flushed to the chunk provider. The set must not be retained or modified.
+     */
+    public void onFlush(LongSet dirtySections) {
+
+    }
+
+    public void endBatch(int remainingSteps) {
+
+    }
+}
@@ -0,0 +1,198 @@
+package me.jellysquid.mods.phosphor.common.metrics;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Counters and histograms which describe what the lighting engine is doing. These are intended to be used on
+ * production servers to correlate lighting load with drops in tick rate.
+ *
+ * Metrics are disabled by default and can be enabled by launching the game with {@code -Dphosphor.metrics=true}. Every
+ * call site checks {@link LightEngineMetrics#ENABLED} first, and since it is a static final field, the JIT will remove
+ * the instrumentation entirely when metrics are disabled.
+ */
+public class LightEngineMetrics {
+    public static final boolean ENABLED = Boolean.getBoolean("phosphor.metrics");
+
+    // The number of pending light updates at the start of each batch of light updates, which is processed by a single
+    // call to ChunkLightProvider#doLightUpdates. This is not tied to the server's ticks.
+    public static final Histogram PENDING_UPDATES_PER_BATCH = new Histogram("pending_updates_per_batch");
+
+    // The number of times light was propagated from one block to another
+    public static final Counter PROPAGATE_LEVEL_CALLS = new Counter("propagate_level_calls");
+
+    // ChunkLightProvider#getBlockStateForLighting lookups which did (not) hit the chunk section cache
+    public static final Counter BLOCK_STATE_CACHE_HITS = new Counter("block_state_cache_hits");
+    public static final Counter BLOCK_STATE_CACHE_MISSES = new Counter("block_state_cache_misses");
+
+    // ChunkToNibbleArrayMap#get lookups which did (not) hit the light array cache
+    public static final Counter LIGHT_ARRAY_CACHE_HITS = new Counter("light_array_cache_hits");
+    public static final Counter LIGHT_ARRAY_CACHE_MISSES = new Counter("light_array_cache_misses");
+
+    // Optimistic reads of the light storage which were invalidated by a writer and had to take the read lock
+    public static final Counter STORAGE_LOCK_CONTENDED_READS = new Counter("storage_lock_contended_reads");
+
+    // The time spent waiting to acquire the light storage lock (in nanoseconds)
+    public static final Histogram STORAGE_LOCK_WAIT_NANOS = new Histogram("storage_lock_wait_nanos");
+
+    // The number of dirty sections which the chunk provider was notified of each time light changes were flushed
+    public static final Histogram FLUSHED_DIRTY_SECTIONS = new Histogram("flushed_dirty_sections");
+
+    // NibbleArrayPool#allocate() calls which could (not) re-use a pooled array
+    public static final Counter NIBBLE_ARRAY_POOL_HITS = new Counter("nibble_array_pool_hits");
+    public static final Counter NIBBLE_ARRAY_POOL_MISSES = new Counter("nibble_array_pool_misses");
+
+    // Face occlusion checks which did (not) hit the FaceOcclusionCache
+    public static final Counter FACE_OCCLUSION_CACHE_HITS = new Counter("face_occlusion_cache_hits");
+    public static final Counter FACE_OCCLUSION_CACHE_MISSES = new Counter("face_occlusion_cache_misses");
+
+    // The number of times a collection which is regularly cleared was trimmed after a period of low occupancy
+    public static final Counter COLLECTION_TRIMS = new Counter("collection_trims");
+
+    // The capacity (in entries) retained by each collection tracked by a CapacityTracker, recorded whenever it is cleared
+    public static final Histogram RETAINED_CAPACITY = new Histogram("retained_capacity");
+
+    // The capacity (in entries) released by each trim of a collection
+    public static final Histogram TRIMMED_CAPACITY = new Histogram("trimmed_capacity");
+
+    private static final Counter[] COUNTERS = new Counter[] {
+            PROPAGATE_LEVEL_CALLS,
+            BLOCK_STATE_CACHE_HITS,
+            BLOCK_STATE_CACHE_MISSES,
+            LIGHT_ARRAY_CACHE_HITS,
+            LIGHT_ARRAY_CACHE_MISSES,
+            STORAGE_LOCK_CONTENDED_READS,
+            NIBBLE_ARRAY_POOL_HITS,
+            NIBBLE_ARRAY_POOL_MISSES,
+            FACE_OCCLUSION_CACHE_HITS,
+            FACE_OCCLUSION_CACHE_MISSES,
+            COLLECTION_TRIMS
+    };
+
+    // Pairs of hit and miss counters, from which a hit rate is reported
+    private static final Counter[][] HIT_RATES = new Counter[][] {
+            { BLOCK_STATE_CACHE_HITS, BLOCK_STATE_CACHE_MISSES },
+            { LIGHT_ARRAY_CACHE_HITS, LIGHT_ARRAY_CACHE_MISSES },
+            { NIBBLE_ARRAY_POOL_HITS, NIBBLE_ARRAY_POOL_MISSES },
+            { FACE_OCCLUSION_CACHE_HITS, FACE_OCCLUSION_CACHE_MISSES }
+    };
+
+    private static final Histogram[] HISTOGRAMS = new Histogram[] {
+            PENDING_UPDATES_PER_BATCH,
+            STORAGE_LOCK_WAIT_NANOS,
+            FLUSHED_DIRTY_SECTIONS,
+            RETAINED_CAPACITY,
+            TRIMMED_CAPACITY
+    };
+
+    public static Counter[] getCounters() {
+        return COUNTERS.clone();
+    }
+
+    public static Histogram[] getHistograms() {
+        return HISTOGRAMS.clone();
+    }
+
+    /**
+     * Writes a human-readable summary of all metrics to the given logger.
+     */
+    public static void dump(Logger logger) {
+        for (Counter counter : COUNTERS) {
+            logger.info("{}: {}", counter.getName(), counter.get());
+        }
+
+        for (Counter[] pair : HIT_RATES) {
+            logger.info("{}: {}", getHitRateName(pair[0]), String.format("%.2f%%", getHitRate(pair[0], pair[1]) * 100.0D));
+        }
+
+        for (Histogram histogram : HISTOGRAMS) {
+            logger.info("{}: count={}, mean={}, p50={}, p99={}, max={}", histogram.getName(), histogram.getCount(),
+                    String.format("%.2f", histogram.getMean()), histogram.getPercentile(0.5D),
+                    histogram.getPercentile(0.99D), histogram.getMax());
+        }
+    }
+
+    public static JsonObject toJson() {
+        JsonObject counters = new JsonObject();
+
+        for (Counter counter : COUNTERS) {
+            counters.addProperty(counter.getName(), counter.get());
+        }
+
+        JsonObject hitRates = new JsonObject();
+
+        for (Counter[] pair : HIT_RATES) {
+            hitRates.addProperty(getHitRateName(pair[0]), getHitRate(pair[0], pair[1]));
+        }
+
+        JsonObject histograms = new JsonObject();
+
+        for (Histogram histogram : HISTOGRAMS) {
+            JsonObject obj = new JsonObject();
+            obj.addProperty("count", histogram.getCount());
+            obj.addProperty("sum", histogram.getSum());
+            obj.addProperty("mean", histogram.getMean());
+            obj.addProperty("p50", histogram.getPercentile(0.5D));
+            obj.addProperty("p99", histogram.getPercentile(0.99D));
+            obj.addProperty("max", histogram.getMax());
+
+            histograms.add(histogram.getName(), obj);
+        }
+
+        JsonObject root = new JsonObject();
+        root.addProperty("timestamp", System.currentTimeMillis());
+        root.add("counters", counters);
+        root.add("hit_rates", hitRates);
+        root.add("histograms", histograms);
+
+        return root;
+    }
+
+    private static String getHitRateName(Counter hits) {
+        String name = hits.getName();
+
+        return name.substring(0, name.length() - "_hits".length()) + "_hit_rate";
+    }
+
+    private static double getHitRate(Counter hits, Counter misses) {
+        long h = hits.get();
+        long total = h + misses.get();
+
+        return total == 0 ? 0.0D : (double) h / total;
+    }
+
+    /**
+     * Writes all metrics to the given file as JSON, replacing any existing contents. The file is written in full before
+     * it replaces the previous one, so that it can be read at any time while the game is running.
+     */
+    public static synchronized void writeJson(Path path) throws IOException {
+        Gson gson = new GsonBuilder().setPrettyPrinting().create();
+
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+
+        try (Writer writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            gson.toJson(toJson(), writer);
+        }
+
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    public static void reset() {
+        for (Counter counter : COUNTERS) {
+            counter.reset();
+        }
+
+        for (Histogram histogram : HISTOGRAMS) {
+            histogram.reset();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package me.jellysquid.mods.phosphor.common.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * A periodic Java Flight Recorder event which reports the change in each light engine metric since the last event.
+ *
+ * This class references the JFR API, which is not available on older Java 8 runtimes, and as such must only be loaded
+ * after checking {@link JfrSupport#isAvailable()}.
+ */
+@Name("phosphor.LightEngineMetrics")
+@Label("Light Engine Metrics")
+@Category({ "Phosphor", "Light Engine" })
+@Description("Activity of the lighting engine since the previous event")
+@Period("1 s")
+@StackTrace(false)
+public class LightEngineMetricsEvent extends Event {
+    @Label("Light Propagations")
+    public long propagateLevelCalls;
+
+    @Label("Block State Cache Hits")
+    public long blockStateCacheHits;
+
+    @Label("Block State Cache Misses")
+    public long blockStateCacheMisses;
+
+    @Label("Light Array Cache Hits")
+    public long lightArrayCacheHits;
+
+    @Label("Light Array Cache Misses")
+    public long lightArrayCacheMisses;
+
+    @Label("Contended Storage Reads")
+    public long storageLockContendedReads;
+
+    @Label("Storage Lock Wait Time")
+    @Timespan(Timespan.NANOSECONDS)
+    public long storageLockWaitNanos;
+
+    @Label("Light Update Batches")
+    public long batches;
+
+    @Label("Pending Light Updates")
+    public long pendingUpdates;
+
+    @Label("Flushed Dirty Sections")
+    public long flushedDirtySections;
+
+    private static final long[] prev = new long[10];
+
+    static void register() {
+        FlightRecorder.addPeriodicEvent(LightEngineMetricsEvent.class, LightEngineMetricsEvent::emit);
+    }
+
+    private static synchronized void emit() {
+        LightEngineMetricsEvent event = new LightEngineMetricsEvent();
+        event.propagateLevelCalls = delta(0, LightEngineMetrics.PROPAGATE_LEVEL_CALLS.get());
+        event.blockStateCacheHits = delta(1, LightEngineMetrics.BLOCK_STATE_CACHE_HITS.get());
+        event.blockStateCacheMisses = delta(2, LightEngineMetrics.BLOCK_STATE_CACHE_MISSES.get());
+        event.lightArrayCacheHits = delta(3, LightEngineMetrics.LIGHT_ARRAY_CACHE_HITS.get());
+        event.lightArrayCacheMisses = delta(4, LightEngineMetrics.LIGHT_ARRAY_CACHE_MISSES.get());
+        event.storageLockContendedReads = delta(5, LightEngineMetrics.STORAGE_LOCK_CONTENDED_READS.get());
+        event.storageLockWaitNanos = delta(6, LightEngineMetrics.STORAGE_LOCK_WAIT_NANOS.getSum());
+        event.batches = delta(7, LightEngineMetrics.PENDING_UPDATES_PER_BATCH.getCount());
+        event.pendingUpdates = delta(8, LightEngineMetrics.PENDING_UPDATES_PER_BATCH.getSum());
+        event.flushedDirtySections = delta(9, LightEngineMetrics.FLUSHED_DIRTY_SECTIONS.getSum());
+        event.commit();
+    }
+
+    private static long delta(int idx, long value) {
+        long ret = value - prev[idx];
+        prev[idx] = value;
+
+        return ret;
+    }
+}
@@ -0,0 +1,65 @@
+package me.jellysquid.mods.phosphor.common.util;
+
+import it.unimi.dsi.fastutil.HashCommon;
+import me.jellysquid.mods.phosphor.common.metrics.LightEngineMetrics;
+import net.minecraft.util.shape.VoxelShape;
+
+/**
+ * A bounded, direct-mapped cache of the results of {@link LightUtil#unionCoversFullCube(VoxelShape, VoxelShape)} for
+ * pairs of extruded faces, keyed by the identity of each shape. The extruded faces of block states are created once and
+ * shared by every block using that state, so the same few pairs are checked over and over during light propagation.
+ *
+ * Only shapes which live as long as the game (such as those in the shape cache of a block state) should be passed to
+ * this cache, as entries are never evicted except by a colliding pair.
+ *
+ * Entries are immutable and published without synchronization. Threads racing to fill the same slot may overwrite each
+ * other's results, which only results in another miss later. The number of slots can be configured with
+ * {@code -Dphosphor.faceOcclusionCacheSize=<n>} and is rounded up to a power of two.
+ */
+public final class FaceOcclusionCache {
+    private static final int SIZE = HashCommon.nextPowerOfTwo(Math.max(1, Integer.getInteger("phosphor.faceOcclusionCacheSize", 1024)));
+
+    private static final Entry[] ENTRIES = new Entry[SIZE];
+
+    private FaceOcclusionCache() {
+
+    }
+
+    /**
+     * Returns true if the union of the extruded faces {@param a} and {@param b} covers a full cube.
+     */
+    public static boolean unionCoversFullCube(VoxelShape a, VoxelShape b) {
+        int idx = HashCommon.mix((System.identityHashCode(a) * 31) + System.identityHashCode(b)) & (SIZE - 1);
+
+        Entry entry = ENTRIES[idx];
+
+        if (entry != null && entry.a == a && entry.b == b) {
+            if (LightEngineMetrics.ENABLED) {
+                LightEngineMetrics.FACE_OCCLUSION_CACHE_HITS.increment();
+            }
+
+            return entry.result;
+        }
+
+        if (LightEngineMetrics.ENABLED) {
+            LightEngineMetrics.FACE_OCCLUSION_CACHE_MISSES.increment();
+        }
+
+        boolean result = LightUtil.unionCoversFullCube(a, b);
+
+        ENTRIES[idx] = new Entry(a, b, result);
+
+        return result;
+    }
+
+    private static final class Entry {
+        private final VoxelShape a, b;
+        private final boolean result;
+
+        private Entry(VoxelShape a, VoxelShape b, boolean result) {
+            this.a = a;
+            this.b = b;
+            this.result = result;
+        }
+    }
+}
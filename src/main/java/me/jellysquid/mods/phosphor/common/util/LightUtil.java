@@ -1,10 +1,23 @@
 package me.jellysquid.mods.phosphor.common.util;
 
 import net.minecraft.util.function.BooleanBiFunction;
+import net.minecraft.util.math.Box;
+import net.minecraft.util.math.Direction;
 import net.minecraft.util.shape.VoxelShape;
 import net.minecraft.util.shape.VoxelShapes;
 
 public class LightUtil {
+    /**
+     * The number of cells along each edge of a face in the coverage masks computed by
+     * {@link LightUtil#computeFaceCoverage(VoxelShape, Direction.Axis, long[], int)}.
+     */
+    public static final int FACE_COVERAGE_RESOLUTION = 16;
+
+    /**
+     * The number of longs used to store the coverage mask of a single face.
+     */
+    public static final int FACE_COVERAGE_WORDS = (FACE_COVERAGE_RESOLUTION * FACE_COVERAGE_RESOLUTION) / 64;
+
     /**
      * Replacement for {@link VoxelShapes#unionCoversFullCube(VoxelShape, VoxelShape)}. This implementation early-exits
      * in some common situations to avoid unnecessary computation.
@@ -39,6 +52,85 @@ public class LightUtil {
         return coversFullCube(VoxelShapes.combine(a, b, BooleanBiFunction.OR));
     }
 
+    /**
+     * Equivalent to {@link LightUtil#unionCoversFullCube(VoxelShape, VoxelShape)} for two extruded faces which lie on the
+     * same plane, using the coverage masks of each face. The masks must have been computed exactly.
+     */
+    public static boolean unionCoversFullFace(long[] a, int aOffset, long[] b, int bOffset) {
+        return ((a[aOffset] | b[bOffset]) &
+                (a[aOffset + 1] | b[bOffset + 1]) &
+                (a[aOffset + 2] | b[bOffset + 2]) &
+                (a[aOffset + 3] | b[bOffset + 3])) == -1L;
+    }
+
+    /**
+     * Rasterizes an extruded face (see {@link VoxelShapes#extrudeFace(VoxelShape, Direction)}) perpendicular to
+     * {@param axis} into a 16x16 bit mask of the cells it covers, which is OR'd into {@param mask} at {@param offset}.
+     * Faces on opposite sides of the same plane use the same cell layout, so the masks of two touching faces can be
+     * compared directly.
+     *
+     * @return True if the mask represents the face exactly, or false if the face has edges which are not aligned to the
+     * grid and the mask must not be used
+     */
+    public static boolean computeFaceCoverage(VoxelShape face, Direction.Axis axis, long[] mask, int offset) {
+        for (Box box : face.getBoundingBoxes()) {
+            double minU, maxU, minV, maxV, minW, maxW;
+
+            switch (axis) {
+                case X:
+                    minU = box.minY; maxU = box.maxY;
+                    minV = box.minZ; maxV = box.maxZ;
+                    minW = box.minX; maxW = box.maxX;
+                    break;
+                case Y:
+                    minU = box.minX; maxU = box.maxX;
+                    minV = box.minZ; maxV = box.maxZ;
+                    minW = box.minY; maxW = box.maxY;
+                    break;
+                default:
+                    minU = box.minX; maxU = box.maxX;
+                    minV = box.minY; maxV = box.maxY;
+                    minW = box.minZ; maxW = box.maxZ;
+                    break;
+            }
+
+            // Extruded faces always span the whole block along their axis
+            if (minW > 0.0D || maxW < 1.0D) {
+                return false;
+            }
+
+            int u0 = getCoverageCell(minU);
+            int u1 = getCoverageCell(maxU);
+            int v0 = getCoverageCell(minV);
+            int v1 = getCoverageCell(maxV);
+
+            if (u0 < 0 || u1 < 0 || v0 < 0 || v1 < 0) {
+                return false;
+            }
+
+            for (int u = u0; u < u1; u++) {
+                for (int v = v0; v < v1; v++) {
+                    int bit = (u * FACE_COVERAGE_RESOLUTION) + v;
+
+                    mask[offset + (bit >> 6)] |= 1L << (bit & 63);
+                }
+            }
+        }
+
+        return true;
+    }
+
+    private static int getCoverageCell(double coord) {
+        double scaled = coord * FACE_COVERAGE_RESOLUTION;
+        long cell = Math.round(scaled);
+
+        if (Math.abs(scaled - cell) > 1.0E-7D) {
+            return -1;
+        }
+
+        return (int) Math.max(0, Math.min(FACE_COVERAGE_RESOLUTION, cell));
+    }
+
     private static boolean coversFullCube(VoxelShape shape) {
         return !VoxelShapes.matchesAnywhere(VoxelShapes.fullCube(), shape, BooleanBiFunction.ONLY_FIRST);
     }
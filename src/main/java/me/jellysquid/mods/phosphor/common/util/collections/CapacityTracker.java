@@ -0,0 +1,77 @@
+package me.jellysquid.mods.phosphor.common.util.collections;
+
+import me.jellysquid.mods.phosphor.common.metrics.LightEngineMetrics;
+
+/**
+ * The hash tables and lists of fastutil only ever grow when cleared, so a collection which is cleared after every batch
+ * of light updates will hold onto the capacity it needed for the largest batch it has ever seen. After a burst of work
+ * (such as pre-generating a world), every later clear or iteration of the collection then has to walk over that
+ * capacity.
+ *
+ * This tracks the size of a collection each time it is about to be cleared, and decides when it should be trimmed. A
+ * collection is only trimmed after its size has stayed under a quarter of its retained capacity for a number of
+ * consecutive clears, which can be set with {@code -Dphosphor.trimDelay} (default 600). It is then trimmed to the
+ * largest size it has seen during that period, so that a collection with a steady workload is not repeatedly trimmed
+ * and grown again. Collections which are retaining less than {@code -Dphosphor.minTrimCapacity} entries (default 1024)
+ * are never trimmed.
+ *
+ * The capacity of a fastutil collection is not visible to us, so the largest size seen since the collection was last
+ * trimmed is used as an estimate of it.
+ */
+public class CapacityTracker {
+    private static final int TRIM_DELAY = Integer.getInteger("phosphor.trimDelay", 600);
+    private static final int MIN_TRIM_CAPACITY = Integer.getInteger("phosphor.minTrimCapacity", 1024);
+
+    // The largest size seen since the collection was last trimmed
+    private int retainedCapacity;
+
+    // The largest size seen since the collection's occupancy fell below a quarter of its retained capacity
+    private int recentPeakSize;
+
+    // The number of consecutive clears after which the collection's occupancy was low
+    private int lowOccupancyCount;
+
+    /**
+     * Records the size of the collection before it is cleared.
+     *
+     * @return The number of entries which the collection should be trimmed to hold after it is cleared, or -1 if it
+     * should not be trimmed
+     */
+    public int onClear(int size) {
+        if (size > this.retainedCapacity) {
+            this.retainedCapacity = size;
+        }
+
+        if (LightEngineMetrics.ENABLED) {
+            LightEngineMetrics.RETAINED_CAPACITY.record(this.retainedCapacity);
+        }
+
+        if (this.retainedCapacity < MIN_TRIM_CAPACITY || size >= this.retainedCapacity / 4) {
+            this.lowOccupancyCount = 0;
+            this.recentPeakSize = 0;
+
+            return -1;
+        }
+
+        if (size > this.recentPeakSize) {
+            this.recentPeakSize = size;
+        }
+
+        if (++this.lowOccupancyCount < TRIM_DELAY) {
+            return -1;
+        }
+
+        int capacity = this.recentPeakSize;
+
+        if (LightEngineMetrics.ENABLED) {
+            LightEngineMetrics.COLLECTION_TRIMS.increment();
+            LightEngineMetrics.TRIMMED_CAPACITY.record(this.retainedCapacity - capacity);
+        }
+
+        this.retainedCapacity = capacity;
+        this.recentPeakSize = 0;
+        this.lowOccupancyCount = 0;
+
+        return capacity;
+    }
+}
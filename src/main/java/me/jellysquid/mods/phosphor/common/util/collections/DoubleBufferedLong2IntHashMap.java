@@ -1,20 +1,20 @@
 package me.jellysquid.mods.phosphor.common.util.collections;
 
 import it.unimi.dsi.fastutil.Hash;
-import it.unimi.dsi.fastutil.longs.Long2IntLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.HashCommon;
 import it.unimi.dsi.fastutil.longs.Long2IntMap;
 import it.unimi.dsi.fastutil.longs.Long2IntMaps;
 import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
-import me.jellysquid.mods.phosphor.common.util.sync.SeqLock;
+import it.unimi.dsi.fastutil.longs.LongSet;
 
 /**
- * A double buffered Long->Object hash table which allows for multiple readers to see a consistent view without
+ * A double buffered Long->Int hash table which allows for multiple readers to see a consistent view without
  * contention over shared resources. The synchronous (owned) view must be synced using
  * {@link DoubleBufferedLong2IntHashMap#flushChangesSync()} after all desired changes have been made.
  *
- * Methods labeled as synchronous access the owned mutable view of this map which behaves as the back-buffer. When
- * changes are flushed, the front-buffer is locked, written into, and then unlocked. The locking implementation is
- * optimized for (relatively) infrequent flips.
+ * Methods labeled as synchronous access the owned mutable view of this map which behaves as the back-buffer. The view
+ * available to other threads is an immutable snapshot which is published with a single volatile write, see
+ * {@link DoubleBufferedLong2ObjectHashMap} for more details.
  *
  * {@link Integer#MIN_VALUE} is used to indicate values which are to be removed and cannot be added to the queue.
  */
@@ -22,16 +22,14 @@ public class DoubleBufferedLong2IntHashMap {
     // The hash table of entries belonging to the owning thread
     private final Long2IntMap mapPending;
 
-    // The hash table of entries available to other threads
-    private final Long2IntMap mapVisible;
+    // The map of pending entry updates to be applied to the visible snapshot
+    private final Long2IntOpenHashMap mapUpdates;
+    private final CapacityTracker mapUpdatesCapacity = new CapacityTracker();
 
-    // The ordered map of pending entry updates to be applied the visible hash table
-    private final Long2IntMap mapUpdates;
+    // The snapshot of entries available to other threads
+    private volatile Snapshot snapshot;
 
-    // The lock used by other threads to grab values from the visible map asynchronously. This prevents other threads
-    // from seeing partial updates while the changes are flushed. The lock implementation is specially selected to
-    // optimize for the common case: infrequent writes, very frequent reads.
-    private final SeqLock lock = new SeqLock();
+    private final float loadFactor;
 
     // The pending return value as seen by the owning thread
     private int queuedDefaultReturnValue;
@@ -42,10 +40,10 @@ public class DoubleBufferedLong2IntHashMap {
 
     public DoubleBufferedLong2IntHashMap(int capacity, float loadFactor) {
         this.mapPending = new Long2IntOpenHashMap(capacity, loadFactor);
-        this.mapVisible = new Long2IntOpenHashMap(capacity, loadFactor);
+        this.mapUpdates = new Long2IntOpenHashMap(capacity, loadFactor);
 
-        // Update order is important, use a linked collection type
-        this.mapUpdates = new Long2IntLinkedOpenHashMap(capacity, loadFactor);
+        this.loadFactor = loadFactor;
+        this.snapshot = Snapshot.create(this.mapPending, 1, 0, loadFactor);
     }
 
     public void defaultReturnValueSync(int v) {
@@ -74,51 +72,55 @@ public class DoubleBufferedLong2IntHashMap {
         return this.mapPending.get(k);
     }
 
-    public int getAsync(long k) {
-        long stamp;
-        int ret;
-
-        do {
-            stamp = this.lock.readBegin();
-            ret = this.mapVisible.get(k);
-        } while (this.lock.shouldRetryRead(stamp));
+    /**
+     * Returns the keys of all entries which have been changed since the last flush. The returned set must not be
+     * modified.
+     */
+    public LongSet getPendingKeysSync() {
+        return this.mapUpdates.keySet();
+    }
 
-        return ret;
+    public int getAsync(long k) {
+        return this.snapshot.get(k);
     }
 
     /**
-     * Flushes all pending changes to the visible hash table seen by outside consumers.
+     * Flushes all pending changes to the visible snapshot seen by outside consumers.
      */
     public void flushChangesSync() {
-        // The return value above has to be updated before we try to early-exit
-        this.lock.writeLock();
-
-        try {
-            // First, update the return value of the collection
-            this.mapVisible.defaultReturnValue(this.queuedDefaultReturnValue);
+        Snapshot prev = this.snapshot;
 
-            // Perform the early-exit check now
-            if (this.mapUpdates.isEmpty()) {
-                return;
+        // The return value has to be updated before we try to early-exit
+        if (this.mapUpdates.isEmpty()) {
+            if (prev.defaultReturnValue != this.queuedDefaultReturnValue) {
+                this.snapshot = new Snapshot(prev.buckets, this.queuedDefaultReturnValue);
             }
 
-            // Use a non-allocating iterator if possible, otherwise we're going to hurt
-            for (Long2IntMap.Entry entry : Long2IntMaps.fastIterable(this.mapUpdates)) {
-                final long key = entry.getLongKey();
-                final int val = entry.getIntValue();
+            this.clearUpdates();
 
-                // MIN_VALUE indicates that the value should be removed instead
-                if (val == Integer.MIN_VALUE) {
-                    this.mapVisible.remove(key);
-                } else {
-                    this.mapVisible.put(key, val);
-                }
-            }
-        } finally {
-            this.lock.writeUnlock();
+            return;
+        }
+
+        int bucketCount = Snapshot.getBucketCount(this.mapPending.size(), prev.buckets.length);
+
+        if (bucketCount != prev.buckets.length) {
+            // The snapshot has grown or shrunk past its bounds, so rebuild it entirely
+            this.snapshot = Snapshot.create(this.mapPending, bucketCount, this.queuedDefaultReturnValue, this.loadFactor);
+        } else {
+            this.snapshot = prev.withUpdates(this.mapUpdates, this.queuedDefaultReturnValue, this.loadFactor);
         }
 
+        this.clearUpdates();
+    }
+
+    private void clearUpdates() {
+        int capacity = this.mapUpdatesCapacity.onClear(this.mapUpdates.size());
+
         this.mapUpdates.clear();
+
+        if (capacity >= 0) {
+            this.mapUpdates.trim(capacity);
+        }
     }
 
     public Long2IntOpenHashMap createSyncView() {
@@ -169,4 +171,107 @@ public class DoubleBufferedLong2IntHashMap {
             }
         };
     }
-}
\ No newline at end of file
+
+    private static final class Snapshot {
+        // The number of entries we aim to keep in each bucket
+        private static final int TARGET_BUCKET_SIZE = 16;
+
+        // The snapshot is re-built if buckets fall outside of these bounds
+        private static final int MIN_BUCKET_SIZE = TARGET_BUCKET_SIZE / 4;
+        private static final int MAX_BUCKET_SIZE = TARGET_BUCKET_SIZE * 2;
+
+        // Buckets which have no entries are null
+        private final Long2IntOpenHashMap[] buckets;
+        private final int mask;
+
+        private final int defaultReturnValue;
+
+        private Snapshot(Long2IntOpenHashMap[] buckets, int defaultReturnValue) {
+            this.buckets = buckets;
+            this.mask = buckets.length - 1;
+            this.defaultReturnValue = defaultReturnValue;
+        }
+
+        static Snapshot create(Long2IntMap entries, int bucketCount, int defaultReturnValue, float loadFactor) {
+            Long2IntOpenHashMap[] buckets = new Long2IntOpenHashMap[bucketCount];
+
+            for (Long2IntMap.Entry entry : Long2IntMaps.fastIterable(entries)) {
+                long key = entry.getLongKey();
+                int idx = getBucketIndex(key, bucketCount - 1);
+
+                Long2IntOpenHashMap bucket = buckets[idx];
+
+                if (bucket == null) {
+                    buckets[idx] = bucket = new Long2IntOpenHashMap(TARGET_BUCKET_SIZE, loadFactor);
+                }
+
+                bucket.put(key, entry.getIntValue());
+            }
+
+            return new Snapshot(buckets, defaultReturnValue);
+        }
+
+        /**
+         * Returns a new snapshot with the given updates applied. Buckets which are not modified are shared with this
+         * snapshot, and those which are modified are copied first.
+         */
+        Snapshot withUpdates(Long2IntMap updates, int defaultReturnValue, float loadFactor) {
+            Long2IntOpenHashMap[] prevBuckets = this.buckets;
+            Long2IntOpenHashMap[] buckets = prevBuckets.clone();
+
+            for (Long2IntMap.Entry entry : Long2IntMaps.fastIterable(updates)) {
+                long key = entry.getLongKey();
+                int value = entry.getIntValue();
+
+                int idx = getBucketIndex(key, this.mask);
+
+                Long2IntOpenHashMap bucket = buckets[idx];
+
+                // The bucket has not been copied in this flush yet
+                if (bucket == prevBuckets[idx]) {
+                    if (bucket != null) {
+                        bucket = bucket.clone();
+                    } else if (value != Integer.MIN_VALUE) {
+                        bucket = new Long2IntOpenHashMap(TARGET_BUCKET_SIZE, loadFactor);
+                    } else {
+                        continue;
+                    }
+
+                    buckets[idx] = bucket;
+                }
+
+                // MIN_VALUE indicates that the value should be removed instead
+                if (value == Integer.MIN_VALUE) {
+                    bucket.remove(key);
+                } else {
+                    bucket.put(key, value);
+                }
+            }
+
+            return new Snapshot(buckets, defaultReturnValue);
+        }
+
+        int get(long key) {
+            Long2IntOpenHashMap bucket = this.buckets[getBucketIndex(key, this.mask)];
+
+            if (bucket == null) {
+                return this.defaultReturnValue;
+            }
+
+            return bucket.getOrDefault(key, this.defaultReturnValue);
+        }
+
+        static int getBucketCount(int size, int current) {
+            if (size > current * MAX_BUCKET_SIZE || (current > 1 && size < current * MIN_BUCKET_SIZE)) {
+                return Math.max(1, HashCommon.nextPowerOfTwo(size / TARGET_BUCKET_SIZE));
+            }
+
+            return current;
+        }
+
+        private static int getBucketIndex(long key, int mask) {
+            // The buckets use the lower bits of the mixed hash for their own tables, so select buckets with the upper bits
+            return (int) (HashCommon.mix(key) >>> 40) & mask;
+        }
+    }
+}
@@ -1,38 +1,38 @@
 package me.jellysquid.mods.phosphor.common.util.collections;
 
 import it.unimi.dsi.fastutil.Hash;
-import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.HashCommon;
 import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
 import it.unimi.dsi.fastutil.longs.Long2ObjectMaps;
 import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
-import me.jellysquid.mods.phosphor.common.util.sync.SeqLock;
+import it.unimi.dsi.fastutil.longs.LongSet;
 
 /**
- * A double buffered Long->Object hash table which allows for multiple readers to see a consistent view without\
+ * A double buffered Long->Object hash table which allows for multiple readers to see a consistent view without
  * contention over shared resources. The synchronous (owned) view must be synced using
- * {@link DoubleBufferedLong2IntHashMap#flushChangesSync()} after all desired changes have been made.
+ * {@link DoubleBufferedLong2ObjectHashMap#flushChangesSync()} after all desired changes have been made.
  *
- * Methods labeled as synchronous access the owned mutable view of this map which behaves as the back-buffer. When
- * changes are flushed, the front-buffer is locked, written into, and then unlocked. The locking implementation is
- * optimized for (relatively) infrequent flips.
+ * Methods labeled as synchronous access the owned mutable view of this map which behaves as the back-buffer. The view
+ * available to other threads is an immutable snapshot which is split into many small buckets by the hash of each key.
+ * When changes are flushed, only the buckets which contain changed keys are copied, and the new snapshot is then
+ * published with a single volatile write. Readers never need to wait for or retry because of a flush, and the cost of
+ * a flush scales with the number of changed entries rather than the size of the map.
  *
  * Null is used to indicate a value to be removed, and as such, cannot be used as a value type in the collection. If
- * you need to remove an element, use {@link DoubleBufferedLong2IntHashMap#removeSync(long)}.
+ * you need to remove an element, use {@link DoubleBufferedLong2ObjectHashMap#removeSync(long)}.
  */
 public class DoubleBufferedLong2ObjectHashMap<V> {
     // The hash table of entries belonging to the owning thread
     private final Long2ObjectMap<V> mapPending;
 
-    // The hash table of entries available to other threads
-    private final Long2ObjectMap<V> mapLive;
+    // The map of pending entry updates to be applied to the visible snapshot
+    private final Long2ObjectOpenHashMap<V> mapUpdates;
+    private final CapacityTracker mapUpdatesCapacity = new CapacityTracker();
 
-    // The ordered map of pending entry updates to be applied the visible hash table
-    private final Long2ObjectMap<V> mapUpdates;
+    // The snapshot of entries available to other threads
+    private volatile Snapshot<V> snapshot;
 
-    // The lock used by other threads to grab values from the visible map asynchronously. This prevents other threads
-    // from seeing partial updates while the changes are flushed. The lock implementation is specially selected to
-    // optimize for the common case: infrequent writes, very frequent reads.
-    private final SeqLock lock = new SeqLock();
+    private final float loadFactor;
 
     public DoubleBufferedLong2ObjectHashMap() {
         this(16, Hash.FAST_LOAD_FACTOR);
@@ -40,10 +40,10 @@ public class DoubleBufferedLong2ObjectHashMap<V> {
 
     public DoubleBufferedLong2ObjectHashMap(final int capacity, final float loadFactor) {
         this.mapPending = new Long2ObjectOpenHashMap<>(capacity, loadFactor);
-        this.mapLive = new Long2ObjectOpenHashMap<>(capacity, loadFactor);
+        this.mapUpdates = new Long2ObjectOpenHashMap<>(capacity, loadFactor);
 
-        // Update order is important, use a linked collection type
-        this.mapUpdates = new Long2ObjectLinkedOpenHashMap<>(capacity, loadFactor);
+        this.loadFactor = loadFactor;
+        this.snapshot = Snapshot.create(this.mapPending, 1, loadFactor);
     }
 
     public V getSync(long k) {
@@ -70,42 +70,147 @@ public class DoubleBufferedLong2ObjectHashMap<V> {
         return this.mapPending.containsKey(k);
     }
 
-    public V getAsync(long k) {
-        long stamp;
-        V ret;
-
-        do {
-            stamp = this.lock.readBegin();
-            ret = this.mapLive.get(k);
-        } while (this.lock.shouldRetryRead(stamp));
+    /**
+     * Returns the keys of all entries which have been changed since the last flush. The returned set must not be
+     * modified.
+     */
+    public LongSet getPendingKeysSync() {
+        return this.mapUpdates.keySet();
+    }
 
-        return ret;
+    public V getAsync(long k) {
+        return this.snapshot.get(k);
     }
 
     public void flushChangesSync() {
         // Early-exit if there's no work to do
         if (this.mapUpdates.isEmpty()) {
+            this.clearUpdates();
+
             return;
         }
 
-        try {
-            this.lock.writeLock();
+        Snapshot<V> prev = this.snapshot;
+
+        int bucketCount = Snapshot.getBucketCount(this.mapPending.size(), prev.buckets.length);
+
+        if (bucketCount != prev.buckets.length) {
+            // The snapshot has grown or shrunk past its bounds, so rebuild it entirely
+            this.snapshot = Snapshot.create(this.mapPending, bucketCount, this.loadFactor);
+        } else {
+            this.snapshot = prev.withUpdates(this.mapUpdates, this.loadFactor);
+        }
+
+        this.clearUpdates();
+    }
+
+    private void clearUpdates() {
+        int capacity = this.mapUpdatesCapacity.onClear(this.mapUpdates.size());
+
+        this.mapUpdates.clear();
+
+        if (capacity >= 0) {
+            this.mapUpdates.trim(capacity);
+        }
+    }
+
+    private static final class Snapshot<V> {
+        // The number of entries we aim to keep in each bucket
+        private static final int TARGET_BUCKET_SIZE = 16;
+
+        // The snapshot is re-built if buckets fall outside of these bounds
+        private static final int MIN_BUCKET_SIZE = TARGET_BUCKET_SIZE / 4;
+        private static final int MAX_BUCKET_SIZE = TARGET_BUCKET_SIZE * 2;
+
+        // Buckets which have no entries are null
+        private final Long2ObjectOpenHashMap<V>[] buckets;
+        private final int mask;
+
+        private Snapshot(Long2ObjectOpenHashMap<V>[] buckets) {
+            this.buckets = buckets;
+            this.mask = buckets.length - 1;
+        }
+
+        @SuppressWarnings("unchecked")
+        static <V> Snapshot<V> create(Long2ObjectMap<V> entries, int bucketCount, float loadFactor) {
+            Long2ObjectOpenHashMap<V>[] buckets = new Long2ObjectOpenHashMap[bucketCount];
 
-            // Use a non-allocating iterator if possible, otherwise we're going to hurt
-            for (Long2ObjectMap.Entry<V> entry : Long2ObjectMaps.fastIterable(this.mapUpdates)) {
-                final long key = entry.getLongKey();
-                final V val = entry.getValue();
+            for (Long2ObjectMap.Entry<V> entry : Long2ObjectMaps.fastIterable(entries)) {
+                long key = entry.getLongKey();
+                int idx = getBucketIndex(key, bucketCount - 1);
 
-                if (val == null) {
-                    this.mapLive.remove(key);
+                Long2ObjectOpenHashMap<V> bucket = buckets[idx];
+
+                if (bucket == null) {
+                    buckets[idx] = bucket = new Long2ObjectOpenHashMap<>(TARGET_BUCKET_SIZE, loadFactor);
+                }
+
+                bucket.put(key, entry.getValue());
+            }
+
+            return new Snapshot<>(buckets);
+        }
+
+        /**
+         * Returns a new snapshot with the given updates applied. Buckets which are not modified are shared with this
+         * snapshot, and those which are modified are copied first.
+         */
+        Snapshot<V> withUpdates(Long2ObjectMap<V> updates, float loadFactor) {
+            Long2ObjectOpenHashMap<V>[] prevBuckets = this.buckets;
+            Long2ObjectOpenHashMap<V>[] buckets = prevBuckets.clone();
+
+            for (Long2ObjectMap.Entry<V> entry : Long2ObjectMaps.fastIterable(updates)) {
+                long key = entry.getLongKey();
+                V value = entry.getValue();
+
+                int idx = getBucketIndex(key, this.mask);
+
+                Long2ObjectOpenHashMap<V> bucket = buckets[idx];
+
+                // The bucket has not been copied in this flush yet
+                if (bucket == prevBuckets[idx]) {
+                    if (bucket != null) {
+                        bucket = bucket.clone();
+                    } else if (value != null) {
+                        bucket = new Long2ObjectOpenHashMap<>(TARGET_BUCKET_SIZE, loadFactor);
+                    } else {
+                        continue;
+                    }
+
+                    buckets[idx] = bucket;
+                }
+
+                if (value == null) {
+                    bucket.remove(key);
                 } else {
-                    this.mapLive.put(key, val);
+                    bucket.put(key, value);
                 }
             }
-        } finally {
-            this.lock.writeUnlock();
+
+            return new Snapshot<>(buckets);
         }
 
-        this.mapUpdates.clear();
+        V get(long key) {
+            Long2ObjectOpenHashMap<V> bucket = this.buckets[getBucketIndex(key, this.mask)];
+
+            if (bucket == null) {
+                return null;
+            }
+
+            return bucket.get(key);
+        }
+
+        static int getBucketCount(int size, int current) {
+            if (size > current * MAX_BUCKET_SIZE || (current > 1 && size < current * MIN_BUCKET_SIZE)) {
+                return Math.max(1, HashCommon.nextPowerOfTwo(size / TARGET_BUCKET_SIZE));
+            }
+
+            return current;
+        }
+
+        private static int getBucketIndex(long key, int mask) {
+            // The buckets use the lower bits of the mixed hash for their own tables, so select buckets with the upper bits
+            return (int) (HashCommon.mix(key) >>> 40) & mask;
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,247 @@
+package me.jellysquid.mods.phosphor.common.util.collections;
+
+import it.unimi.dsi.fastutil.Hash;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import net.minecraft.util.math.ChunkSectionPos;
+
+import java.util.function.IntFunction;
+
+/**
+ * A double buffered map of chunk section positions to values, which follows the same access model as
+ * {@link DoubleBufferedLong2ObjectHashMap}. Rather than hashing every section position, the values of each chunk column
+ * are stored in a fixed array which is indexed by the section's Y coordinate, and only the column is hashed. This makes
+ * accessing the sections above and below another a direct array access (see
+ * {@link DoubleBufferedSectionColumnMap#getColumnAsync(long)}), and shrinks the hash tables by a factor of the world's
+ * height.
+ *
+ * The snapshot available to other threads holds its own copy of each column array. When changes are flushed, only the
+ * columns which were changed are copied into the new snapshot.
+ *
+ * Sections outside of the range of Y coordinates which light data is stored for cannot be stored in this map.
+ */
+public class DoubleBufferedSectionColumnMap<V> {
+    // [VanillaCopy] Light data is stored for one section below and above the world
+    public static final int MIN_SECTION_Y = -1;
+    public static final int MAX_SECTION_Y = 16;
+
+    public static final int COLUMN_HEIGHT = MAX_SECTION_Y - MIN_SECTION_Y + 1;
+
+    // The columns of values belonging to the owning thread
+    private final Long2ObjectOpenHashMap<V[]> columnsPending;
+
+    // The map of pending value updates to be applied to the visible snapshot, keyed by section
+    private final Long2ObjectOpenHashMap<V> mapUpdates;
+    private final CapacityTracker mapUpdatesCapacity = new CapacityTracker();
+
+    // Scratch set of the columns which were modified, used while flushing changes
+    private final LongOpenHashSet changedColumns = new LongOpenHashSet();
+    private final CapacityTracker changedColumnsCapacity = new CapacityTracker();
+
+    // The copies of each column available to other threads, which are never modified after being published
+    private final DoubleBufferedLong2ObjectHashMap<V[]> snapshot;
+
+    private final IntFunction<V[]> arrayFactory;
+
+    public DoubleBufferedSectionColumnMap(IntFunction<V[]> arrayFactory) {
+        this.arrayFactory = arrayFactory;
+
+        this.columnsPending = new Long2ObjectOpenHashMap<>(16, Hash.FAST_LOAD_FACTOR);
+        this.mapUpdates = new Long2ObjectOpenHashMap<>(16, Hash.FAST_LOAD_FACTOR);
+
+        this.snapshot = new DoubleBufferedLong2ObjectHashMap<>();
+    }
+
+    public V getSync(long k) {
+        int idx = getColumnIndex(k);
+
+        if (idx < 0) {
+            return null;
+        }
+
+        V[] column = this.columnsPending.get(getColumnKey(k));
+
+        if (column == null) {
+            return null;
+        }
+
+        return column[idx];
+    }
+
+    public V putSync(long k, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Value must not be null, use removeSync instead to remove entries");
+        }
+
+        int idx = getColumnIndex(k);
+
+        if (idx < 0) {
+            throw new IllegalArgumentException("Section is outside of the range which can be stored: " + ChunkSectionPos.getY(k));
+        }
+
+        long columnKey = getColumnKey(k);
+
+        V[] column = this.columnsPending.get(columnKey);
+
+        if (column == null) {
+            this.columnsPending.put(columnKey, column = this.arrayFactory.apply(COLUMN_HEIGHT));
+        }
+
+        V prev = column[idx];
+        column[idx] = value;
+
+        this.mapUpdates.put(k, value);
+
+        return prev;
+    }
+
+    public V removeSync(long k) {
+        this.mapUpdates.put(k, null);
+
+        int idx = getColumnIndex(k);
+
+        if (idx < 0) {
+            return null;
+        }
+
+        long columnKey = getColumnKey(k);
+
+        V[] column = this.columnsPending.get(columnKey);
+
+        if (column == null) {
+            return null;
+        }
+
+        V prev = column[idx];
+        column[idx] = null;
+
+        if (prev != null && isEmpty(column)) {
+            this.columnsPending.remove(columnKey);
+        }
+
+        return prev;
+    }
+
+    public boolean containsSync(long k) {
+        return this.getSync(k) != null;
+    }
+
+    /**
+     * Returns the keys of all sections which have been changed since the last flush. The returned set must not be
+     * modified.
+     */
+    public LongSet getPendingKeysSync() {
+        return this.mapUpdates.keySet();
+    }
+
+    /**
+     * Returns the values of the owned view for the column containing {@param k}, indexed by section Y (offset by
+     * {@link DoubleBufferedSectionColumnMap#MIN_SECTION_Y}), or null if the column has no values. The returned array
+     * must not be modified.
+     */
+    public V[] getColumnSync(long k) {
+        return this.columnsPending.get(getColumnKey(k));
+    }
+
+    public V getAsync(long k) {
+        int idx = getColumnIndex(k);
+
+        if (idx < 0) {
+            return null;
+        }
+
+        V[] column = this.snapshot.getAsync(getColumnKey(k));
+
+        if (column == null) {
+            return null;
+        }
+
+        return column[idx];
+    }
+
+    /**
+     * Returns the values of the visible snapshot for the column containing {@param k}, indexed by section Y (offset by
+     * {@link DoubleBufferedSectionColumnMap#MIN_SECTION_Y}), or null if the column has no values. The returned array
+     * must not be modified.
+     */
+    public V[] getColumnAsync(long k) {
+        return this.snapshot.getAsync(getColumnKey(k));
+    }
+
+    public void flushChangesSync() {
+        // Early-exit if there's no work to do
+        if (this.mapUpdates.isEmpty()) {
+            this.clearUpdates();
+
+            return;
+        }
+
+        LongOpenHashSet changedColumns = this.changedColumns;
+
+        for (LongIterator it = this.mapUpdates.keySet().iterator(); it.hasNext(); ) {
+            changedColumns.add(getColumnKey(it.nextLong()));
+        }
+
+        DoubleBufferedLong2ObjectHashMap<V[]> snapshot = this.snapshot;
+
+        for (LongIterator it = changedColumns.iterator(); it.hasNext(); ) {
+            long columnKey = it.nextLong();
+
+            V[] column = this.columnsPending.get(columnKey);
+
+            if (column != null) {
+                snapshot.putSync(columnKey, column.clone());
+            } else if (snapshot.containsSync(columnKey)) {
+                snapshot.removeSync(columnKey);
+            }
+        }
+
+        snapshot.flushChangesSync();
+
+        int capacity = this.changedColumnsCapacity.onClear(changedColumns.size());
+
+        changedColumns.clear();
+
+        if (capacity >= 0) {
+            changedColumns.trim(capacity);
+        }
+
+        this.clearUpdates();
+    }
+
+    private void clearUpdates() {
+        int capacity = this.mapUpdatesCapacity.onClear(this.mapUpdates.size());
+
+        this.mapUpdates.clear();
+
+        if (capacity >= 0) {
+            this.mapUpdates.trim(capacity);
+        }
+    }
+
+    private static long getColumnKey(long k) {
+        return ChunkSectionPos.withZeroZ(k);
+    }
+
+    private static int getColumnIndex(long k) {
+        int y = ChunkSectionPos.getY(k);
+
+        if (y < MIN_SECTION_Y || y > MAX_SECTION_Y) {
+            return -1;
+        }
+
+        return y - MIN_SECTION_Y;
+    }
+
+    private static <V> boolean isEmpty(V[] column) {
+        for (V value : column) {
+            if (value != null) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
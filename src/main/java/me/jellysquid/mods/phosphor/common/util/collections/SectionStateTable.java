@@ -0,0 +1,484 @@
+package me.jellysquid.mods.phosphor.common.util.collections;
+
+import it.unimi.dsi.fastutil.Hash;
+import it.unimi.dsi.fastutil.longs.AbstractLongSet;
+import it.unimi.dsi.fastutil.longs.Long2ShortMap;
+import it.unimi.dsi.fastutil.longs.Long2ShortMaps;
+import it.unimi.dsi.fastutil.longs.Long2ShortOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import it.unimi.dsi.fastutil.objects.ObjectIterator;
+
+import java.util.NoSuchElementException;
+
+/**
+ * Tracks the membership of keys in up to 8 sets through a single hash table, where each set is represented by one bit
+ * of a packed state per key. Keys which belong to several sets only need to be stored and hashed once, and changes to
+ * several sets can be made with a single lookup, see {@link SectionStateTable#update(long, int, int)}. Each set is also
+ * available as a {@link LongSet} view, so that code which expects a plain set can continue to use one.
+ *
+ * Finding the members of one set in the shared table would require scanning every key in it, so sets which are iterated
+ * over or cleared often can be indexed. The keys of an indexed set are also appended to a list as they are added, and
+ * the upper 8 bits of each state record which indexes a key is listed in, so that a key is never listed twice.
+ * Removing a key only clears its membership bit, and the stale entries in an index are skipped when it is iterated
+ * over and dropped when it is cleared or compacted.
+ */
+public class SectionStateTable {
+    public static final int MAX_FLAGS = 8;
+
+    // Stale index entries are only dropped once they outnumber the live ones by this factor
+    private static final int INDEX_COMPACTION_FACTOR = 2;
+    private static final int INDEX_COMPACTION_MIN_SIZE = 64;
+
+    private final Long2ShortOpenHashMap states;
+
+    // The flags which have an index of their members
+    private final int indexedFlags;
+
+    private final LongArrayList[] indexes = new LongArrayList[MAX_FLAGS];
+    private final CapacityTracker[] indexCapacities = new CapacityTracker[MAX_FLAGS];
+    private final int[] sizes = new int[MAX_FLAGS];
+    private final FlagSet[] views = new FlagSet[MAX_FLAGS];
+
+    /**
+     * @param indexedFlags A mask of the flags which will be indexed for iteration
+     */
+    public SectionStateTable(int indexedFlags) {
+        if ((indexedFlags & ~0xFF) != 0) {
+            throw new IllegalArgumentException("Only " + MAX_FLAGS + " flags are supported");
+        }
+
+        this.states = new Long2ShortOpenHashMap(16, Hash.FAST_LOAD_FACTOR);
+        this.indexedFlags = indexedFlags;
+
+        for (int i = 0; i < MAX_FLAGS; i++) {
+            if ((indexedFlags & (1 << i)) != 0) {
+                this.indexes[i] = new LongArrayList();
+                this.indexCapacities[i] = new CapacityTracker();
+            }
+
+            this.views[i] = new FlagSet(i);
+        }
+    }
+
+    /**
+     * Returns a view of the keys which have {@param flag} set.
+     */
+    public LongSet getSet(int flag) {
+        return this.views[getIndex(flag)];
+    }
+
+    /**
+     * Returns the flags which are set for {@param key}.
+     */
+    public int get(long key) {
+        return this.getState(key) & 0xFF;
+    }
+
+    /**
+     * Returns the number of keys which have {@param flag} set.
+     */
+    public int size(int flag) {
+        return this.sizes[getIndex(flag)];
+    }
+
+    private static int getIndex(int flag) {
+        if (Integer.bitCount(flag) != 1 || (flag & ~0xFF) != 0) {
+            throw new IllegalArgumentException("Not a single flag: " + flag);
+        }
+
+        return Integer.numberOfTrailingZeros(flag);
+    }
+
+    /**
+     * Sets and then clears the given flags of {@param key} with a single lookup.
+     *
+     * @return The flags which were set for the key before the update
+     */
+    public int update(long key, int set, int clear) {
+        int state = this.getState(key);
+        int prev = state & 0xFF;
+
+        int flags = (prev | set) & ~clear;
+
+        if (flags == prev) {
+            return prev;
+        }
+
+        this.updateSizes(prev, flags);
+
+        // Index the key for any indexed flags which were added and which it is not already listed in
+        int unlisted = flags & ~prev & this.indexedFlags & ~(state >>> 8);
+
+        if (unlisted != 0) {
+            this.addToIndexes(key, unlisted);
+        }
+
+        this.setState(key, flags | (state & 0xFF00) | (unlisted << 8));
+
+        return prev;
+    }
+
+    private void updateSizes(int prev, int flags) {
+        int changed = prev ^ flags;
+
+        while (changed != 0) {
+            int i = Integer.numberOfTrailingZeros(changed);
+
+            if ((flags & (1 << i)) != 0) {
+                this.sizes[i]++;
+            } else {
+                this.sizes[i]--;
+            }
+
+            changed &= changed - 1;
+        }
+    }
+
+    private void addToIndexes(long key, int flags) {
+        while (flags != 0) {
+            int i = Integer.numberOfTrailingZeros(flags);
+
+            this.indexes[i].add(key);
+
+            flags &= flags - 1;
+        }
+    }
+
+    private int getState(long key) {
+        return this.states.get(key) & 0xFFFF;
+    }
+
+    private void setState(long key, int state) {
+        if (state == 0) {
+            this.states.remove(key);
+        } else {
+            this.states.put(key, (short) state);
+        }
+    }
+
+    private void clear(int index) {
+        int bit = 1 << index;
+
+        if (this.sizes[index] == 0 && this.indexes[index] == null) {
+            return;
+        }
+
+        LongArrayList list = this.indexes[index];
+
+        if (list != null) {
+            int listedBit = bit << 8;
+
+            for (int i = 0; i < list.size(); i++) {
+                long key = list.getLong(i);
+
+                this.setState(key, this.getState(key) & ~(bit | listedBit));
+            }
+
+            int capacity = this.indexCapacities[index].onClear(list.size());
+
+            list.clear();
+
+            if (capacity >= 0) {
+                list.trim(capacity);
+            }
+        } else {
+            for (ObjectIterator<Long2ShortMap.Entry> it = Long2ShortMaps.fastIterator(this.states); it.hasNext(); ) {
+                Long2ShortMap.Entry entry = it.next();
+                int state = entry.getShortValue() & 0xFFFF;
+
+                if ((state & bit) == 0) {
+                    continue;
+                }
+
+                state &= ~bit;
+
+                if (state == 0) {
+                    it.remove();
+                } else {
+                    entry.setValue((short) state);
+                }
+            }
+        }
+
+        this.sizes[index] = 0;
+    }
+
+    /**
+     * Drops the entries of an index whose keys are no longer members of its set if they have accumulated.
+     */
+    private void compact(int index) {
+        LongArrayList list = this.indexes[index];
+
+        if (list.size() < INDEX_COMPACTION_MIN_SIZE || list.size() <= this.sizes[index] * INDEX_COMPACTION_FACTOR) {
+            return;
+        }
+
+        int bit = 1 << index;
+        int listedBit = bit << 8;
+
+        int count = 0;
+
+        for (int i = 0; i < list.size(); i++) {
+            long key = list.getLong(i);
+            int state = this.getState(key);
+
+            if ((state & bit) != 0) {
+                list.set(count++, key);
+            } else {
+                this.setState(key, state & ~listedBit);
+            }
+        }
+
+        list.size(count);
+    }
+
+    private class FlagSet extends AbstractLongSet {
+        private final int index;
+        private final int bit;
+
+        FlagSet(int index) {
+            this.index = index;
+            this.bit = 1 << index;
+        }
+
+        @Override
+        public boolean add(long key) {
+            return (SectionStateTable.this.update(key, this.bit, 0) & this.bit) == 0;
+        }
+
+        @Override
+        public boolean remove(long key) {
+            return (SectionStateTable.this.update(key, 0, this.bit) & this.bit) != 0;
+        }
+
+        @Override
+        public boolean contains(long key) {
+            return (SectionStateTable.this.getState(key) & this.bit) != 0;
+        }
+
+        @Override
+        public int size() {
+            return SectionStateTable.this.sizes[this.index];
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return SectionStateTable.this.sizes[this.index] == 0;
+        }
+
+        @Override
+        public void clear() {
+            SectionStateTable.this.clear(this.index);
+        }
+
+        @Override
+        public LongIterator iterator() {
+            if (SectionStateTable.this.indexes[this.index] != null) {
+                SectionStateTable.this.compact(this.index);
+
+                return new IndexIterator(this.index);
+            }
+
+            return new ScanIterator(this.index);
+        }
+    }
+
+    /**
+     * Iterates over the members of a set through its index, skipping over stale entries.
+     */
+    private class IndexIterator implements LongIterator {
+        private final LongArrayList list;
+        private final int bit;
+
+        private int pos;
+        private long next;
+        private boolean hasNext;
+
+        private long last;
+        private boolean canRemove;
+
+        IndexIterator(int index) {
+            this.list = SectionStateTable.this.indexes[index];
+            this.bit = 1 << index;
+
+            this.advance();
+        }
+
+        private void advance() {
+            this.hasNext = false;
+
+            while (this.pos < this.list.size()) {
+                long key = this.list.getLong(this.pos++);
+
+                if ((SectionStateTable.this.getState(key) & this.bit) != 0) {
+                    this.next = key;
+                    this.hasNext = true;
+
+                    break;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.hasNext;
+        }
+
+        @Override
+        public long nextLong() {
+            if (!this.hasNext) {
+                throw new NoSuchElementException();
+            }
+
+            this.last = this.next;
+            this.canRemove = true;
+
+            this.advance();
+
+            return this.last;
+        }
+
+        @Override
+        public void remove() {
+            if (!this.canRemove) {
+                throw new IllegalStateException();
+            }
+
+            this.canRemove = false;
+
+            SectionStateTable.this.update(this.last, 0, this.bit);
+        }
+    }
+
+    /**
+     * Iterates over the members of a set which is not indexed by scanning every key in the table. The scan only looks
+     * ahead for the next member when it is asked to, so that a key removed through this iterator right after being
+     * returned (the usual pattern) can be dropped from the table through the underlying iterator when it belongs to no
+     * other set. If the iterator has already looked ahead, the table can no longer be modified safely, so those keys are
+     * dropped once the scan has finished.
+     */
+    private class ScanIterator implements LongIterator {
+        private final ObjectIterator<Long2ShortMap.Entry> it;
+        private final int bit;
+
+        // The entry which the underlying iterator is positioned on, as the fast iterator re-uses entry objects
+        private Long2ShortMap.Entry entry;
+
+        private boolean hasNext;
+        private boolean advanced;
+
+        private long last;
+        private boolean canRemove;
+
+        // The keys whose state was emptied after the underlying iterator had already moved past them
+        private LongArrayList emptied;
+
+        ScanIterator(int index) {
+            this.it = Long2ShortMaps.fastIterator(SectionStateTable.this.states);
+            this.bit = 1 << index;
+        }
+
+        private void advance() {
+            this.advanced = true;
+            this.hasNext = false;
+
+            while (this.it.hasNext()) {
+                Long2ShortMap.Entry entry = this.it.next();
+
+                if ((entry.getShortValue() & this.bit) != 0) {
+                    this.entry = entry;
+                    this.hasNext = true;
+
+                    return;
+                }
+            }
+
+            this.entry = null;
+            this.dropEmptied();
+        }
+
+        private void dropEmptied() {
+            LongArrayList emptied = this.emptied;
+
+            if (emptied == null) {
+                return;
+            }
+
+            for (int i = 0; i < emptied.size(); i++) {
+                long key = emptied.getLong(i);
+
+                // The key may have been added to another set since
+                SectionStateTable.this.setState(key, SectionStateTable.this.getState(key));
+            }
+
+            this.emptied = null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (!this.advanced) {
+                this.advance();
+            }
+
+            return this.hasNext;
+        }
+
+        @Override
+        public long nextLong() {
+            if (!this.hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            this.last = this.entry.getLongKey();
+            this.canRemove = true;
+            this.advanced = false;
+
+            return this.last;
+        }
+
+        @Override
+        public void remove() {
+            if (!this.canRemove) {
+                throw new IllegalStateException();
+            }
+
+            this.canRemove = false;
+
+            if (this.advanced) {
+                int state = SectionStateTable.this.getState(this.last);
+                int flags = state & ~this.bit;
+
+                SectionStateTable.this.updateSizes(state & 0xFF, flags & 0xFF);
+
+                if (flags == 0) {
+                    if (this.emptied == null) {
+                        this.emptied = new LongArrayList();
+                    }
+
+                    this.emptied.add(this.last);
+                }
+
+                SectionStateTable.this.states.put(this.last, (short) flags);
+
+                if (!this.hasNext) {
+                    this.dropEmptied();
+                }
+
+                return;
+            }
+
+            int state = this.entry.getShortValue() & 0xFFFF;
+            int flags = state & ~this.bit;
+
+            SectionStateTable.this.updateSizes(state & 0xFF, flags & 0xFF);
+
+            if (flags == 0) {
+                this.it.remove();
+            } else {
+                this.entry.setValue((short) flags);
+            }
+        }
+    }
+}
@@ -0,0 +1,468 @@
+package me.jellysquid.mods.phosphor.common.util.collections;
+
+import it.unimi.dsi.fastutil.longs.AbstractLong2ByteMap;
+import it.unimi.dsi.fastutil.longs.Long2ByteMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMaps;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.AbstractObjectSet;
+import it.unimi.dsi.fastutil.objects.ObjectIterator;
+import it.unimi.dsi.fastutil.objects.ObjectSet;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Direction;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.function.LongConsumer;
+
+/**
+ * A Long->Byte map which is keyed by block positions and which buckets entries by the chunk section they belong to.
+ * Each section with entries is backed by a packed array of 4096 values along with a bit-field of which positions are
+ * present, so that once the section has been located, every operation is a simple array access. In order to avoid
+ * hashing for every access, the previously used section is cached, which is effective as most accesses made by the
+ * light engine are to neighboring blocks.
+ *
+ * This layout also allows every entry within a section to be visited (or discarded) without needing to check every
+ * block position or entry in the map, see {@link SectionedLong2ByteMap#forEachInSection(long, LongConsumer)}.
+ *
+ * Sections which become empty are returned to a small pool so that large light updates do not continually allocate
+ * and discard the (relatively) large backing arrays.
+ */
+public class SectionedLong2ByteMap extends AbstractLong2ByteMap {
+    private static final long serialVersionUID = 1L;
+
+    // Used to mask a long-encoded block position into a section key by dropping the first 4 bits of each component
+    private static final long BLOCK_TO_SECTION_KEY_MASK = ~BlockPos.asLong(15, 15, 15);
+
+    // The maximum number of empty sections which will be retained for re-use
+    private static final int MAX_POOLED_SECTIONS = 16;
+
+    // The difference between the local index of a position and its neighbor in each direction
+    private static final int[] NEIGHBOR_OFFSETS = new int[Direction.values().length];
+
+    static {
+        for (Direction dir : Direction.values()) {
+            NEIGHBOR_OFFSETS[dir.ordinal()] = (dir.getOffsetX() * 256) + (dir.getOffsetY() * 16) + dir.getOffsetZ();
+        }
+    }
+
+    private final Long2ObjectOpenHashMap<Section> sections;
+    private final CapacityTracker sectionsCapacity = new CapacityTracker();
+
+    private final Section[] pool = new Section[MAX_POOLED_SECTIONS];
+    private int pooled;
+
+    private long prevSectionKey = Long.MIN_VALUE;
+    private Section prevSection;
+
+    private int size;
+
+    // Scratch space used to take a snapshot of a section's entries while iterating over them
+    private final long[] iterationBits = new long[Section.WORDS];
+
+    public SectionedLong2ByteMap(int expectedSections) {
+        this.sections = new Long2ObjectOpenHashMap<>(expectedSections);
+    }
+
+    @Override
+    public byte get(long key) {
+        Section section = this.getSection(getSectionKey(key));
+
+        if (section == null) {
+            return this.defRetValue;
+        }
+
+        int idx = getLocalIndex(key);
+
+        if (!section.contains(idx)) {
+            return this.defRetValue;
+        }
+
+        return section.values[idx];
+    }
+
+    @Override
+    public boolean containsKey(long key) {
+        Section section = this.getSection(getSectionKey(key));
+
+        return section != null && section.contains(getLocalIndex(key));
+    }
+
+    @Override
+    public byte put(long key, byte value) {
+        long sectionKey = getSectionKey(key);
+        Section section = this.getSection(sectionKey);
+
+        if (section == null) {
+            section = this.createSection(sectionKey);
+        }
+
+        int idx = getLocalIndex(key);
+
+        byte prev;
+
+        if (section.add(idx)) {
+            prev = this.defRetValue;
+
+            this.size++;
+        } else {
+            prev = section.values[idx];
+        }
+
+        section.values[idx] = value;
+
+        return prev;
+    }
+
+    @Override
+    public byte remove(long key) {
+        long sectionKey = getSectionKey(key);
+        Section section = this.getSection(sectionKey);
+
+        if (section == null) {
+            return this.defRetValue;
+        }
+
+        int idx = getLocalIndex(key);
+
+        if (!section.remove(idx)) {
+            return this.defRetValue;
+        }
+
+        byte prev = section.values[idx];
+
+        this.size--;
+
+        if (section.isEmpty()) {
+            this.removeSection(sectionKey);
+        }
+
+        return prev;
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    @Override
+    public void clear() {
+        for (Section section : this.sections.values()) {
+            this.release(section);
+        }
+
+        int capacity = this.sectionsCapacity.onClear(this.sections.size());
+
+        this.sections.clear();
+
+        if (capacity >= 0) {
+            this.sections.trim(capacity);
+        }
+
+        this.prevSectionKey = Long.MIN_VALUE;
+        this.prevSection = null;
+
+        this.size = 0;
+    }
+
+    /**
+     * Calls {@param consumer} with the key of every entry belonging to the chunk section containing {@param blockPos}.
+     * The set of entries is captured before the consumer is called, so entries may be safely removed from this map
+     * during iteration.
+     */
+    public void forEachInSection(long blockPos, LongConsumer consumer) {
+        long sectionKey = getSectionKey(blockPos);
+        Section section = this.getSection(sectionKey);
+
+        if (section == null) {
+            return;
+        }
+
+        long[] bits = this.iterationBits;
+        System.arraycopy(section.occupied, 0, bits, 0, bits.length);
+
+        int startX = BlockPos.unpackLongX(sectionKey);
+        int startY = BlockPos.unpackLongY(sectionKey);
+        int startZ = BlockPos.unpackLongZ(sectionKey);
+
+        for (int word = 0; word < bits.length; word++) {
+            long w = bits[word];
+
+            while (w != 0L) {
+                int idx = (word << 6) | Long.numberOfTrailingZeros(w);
+                w &= w - 1;
+
+                consumer.accept(BlockPos.asLong(startX + ((idx >> 8) & 15), startY + ((idx >> 4) & 15), startZ + (idx & 15)));
+            }
+        }
+    }
+
+    /**
+     * Calls {@param consumer} with the key of every entry in this map. Entries are visited section by section, which
+     * allows callers to benefit from any caching they perform by section. The map must not be modified by the consumer.
+     */
+    public void forEachKey(LongConsumer consumer) {
+        for (Long2ObjectMap.Entry<Section> entry : Long2ObjectMaps.fastIterable(this.sections)) {
+            long sectionKey = entry.getLongKey();
+            Section section = entry.getValue();
+
+            int startX = BlockPos.unpackLongX(sectionKey);
+            int startY = BlockPos.unpackLongY(sectionKey);
+            int startZ = BlockPos.unpackLongZ(sectionKey);
+
+            for (int idx = section.nextIndex(0); idx >= 0; idx = section.nextIndex(idx + 1)) {
+                consumer.accept(BlockPos.asLong(startX + ((idx >> 8) & 15), startY + ((idx >> 4) & 15), startZ + (idx & 15)));
+            }
+        }
+    }
+
+    /**
+     * Reads the values of every block adjacent to {@param blockPos} into {@param values}, indexed by
+     * {@link Direction#ordinal()}, with a single lookup of their section. Blocks without an entry read as the default
+     * return value. Every adjacent block must be within the same chunk section as {@param blockPos}.
+     */
+    public void getNeighborsWithinSection(long blockPos, byte[] values) {
+        Section section = this.getSection(getSectionKey(blockPos));
+
+        if (section == null) {
+            Arrays.fill(values, 0, NEIGHBOR_OFFSETS.length, this.defRetValue);
+
+            return;
+        }
+
+        int idx = getLocalIndex(blockPos);
+
+        for (int i = 0; i < NEIGHBOR_OFFSETS.length; i++) {
+            int adjIdx = idx + NEIGHBOR_OFFSETS[i];
+
+            values[i] = section.contains(adjIdx) ? section.values[adjIdx] : this.defRetValue;
+        }
+    }
+
+    private Section getSection(long sectionKey) {
+        if (this.prevSectionKey == sectionKey) {
+            return this.prevSection;
+        }
+
+        Section section = this.sections.get(sectionKey);
+
+        if (section != null) {
+            this.prevSectionKey = sectionKey;
+            this.prevSection = section;
+        }
+
+        return section;
+    }
+
+    private Section createSection(long sectionKey) {
+        Section section;
+
+        if (this.pooled > 0) {
+            section = this.pool[--this.pooled];
+            this.pool[this.pooled] = null;
+        } else {
+            section = new Section();
+        }
+
+        this.sections.put(sectionKey, section);
+
+        this.prevSectionKey = sectionKey;
+        this.prevSection = section;
+
+        return section;
+    }
+
+    private void removeSection(long sectionKey) {
+        Section section = this.sections.remove(sectionKey);
+
+        if (this.prevSection == section) {
+            this.prevSectionKey = Long.MIN_VALUE;
+            this.prevSection = null;
+        }
+
+        this.release(section);
+    }
+
+    private void release(Section section) {
+        if (this.pooled < this.pool.length) {
+            section.reset();
+
+            this.pool[this.pooled++] = section;
+        }
+    }
+
+    private static long getSectionKey(long blockPos) {
+        return blockPos & BLOCK_TO_SECTION_KEY_MASK;
+    }
+
+    // Finds the index of a local position within a chunk section
+    private static int getLocalIndex(long blockPos) {
+        int x = BlockPos.unpackLongX(blockPos) & 15;
+        int y = BlockPos.unpackLongY(blockPos) & 15;
+        int z = BlockPos.unpackLongZ(blockPos) & 15;
+
+        return (x << 8) | (y << 4) | z;
+    }
+
+    @Override
+    public ObjectSet<Long2ByteMap.Entry> long2ByteEntrySet() {
+        return new AbstractObjectSet<Long2ByteMap.Entry>() {
+            @Override
+            public ObjectIterator<Long2ByteMap.Entry> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return SectionedLong2ByteMap.this.size;
+            }
+        };
+    }
+
+    /**
+     * Read-only iterator over every entry. This is only used by the slow paths in vanilla (such as
+     * LevelPropagator#removePendingUpdateIf) and as such is not optimized.
+     */
+    private class EntryIterator implements ObjectIterator<Long2ByteMap.Entry> {
+        private final ObjectIterator<Long2ObjectMap.Entry<Section>> sectionIterator =
+                Long2ObjectMaps.fastIterator(SectionedLong2ByteMap.this.sections);
+
+        private long sectionKey;
+        private Section section;
+        private int nextIdx = -1;
+
+        EntryIterator() {
+            this.advance();
+        }
+
+        private void advance() {
+            while (true) {
+                if (this.section != null) {
+                    this.nextIdx = this.section.nextIndex(this.nextIdx + 1);
+
+                    if (this.nextIdx >= 0) {
+                        return;
+                    }
+                }
+
+                if (!this.sectionIterator.hasNext()) {
+                    this.section = null;
+
+                    return;
+                }
+
+                Long2ObjectMap.Entry<Section> entry = this.sectionIterator.next();
+
+                this.sectionKey = entry.getLongKey();
+                this.section = entry.getValue();
+                this.nextIdx = -1;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.section != null;
+        }
+
+        @Override
+        public Long2ByteMap.Entry next() {
+            if (!this.hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            int idx = this.nextIdx;
+
+            long key = BlockPos.asLong(BlockPos.unpackLongX(this.sectionKey) + ((idx >> 8) & 15),
+                    BlockPos.unpackLongY(this.sectionKey) + ((idx >> 4) & 15),
+                    BlockPos.unpackLongZ(this.sectionKey) + (idx & 15));
+
+            Long2ByteMap.Entry entry = new BasicEntry(key, this.section.values[idx]);
+
+            this.advance();
+
+            return entry;
+        }
+    }
+
+    private static final class Section {
+        private static final int WORDS = (16 * 16 * 16) / 64;
+
+        // The values of each entry in this section, which are only valid if the corresponding bit is set below
+        private final byte[] values = new byte[16 * 16 * 16];
+
+        // The bit-field of positions which have an entry in this section
+        private final long[] occupied = new long[WORDS];
+
+        private int count;
+
+        boolean contains(int idx) {
+            return (this.occupied[idx >> 6] & (1L << idx)) != 0L;
+        }
+
+        boolean add(int idx) {
+            long bit = 1L << idx;
+            long word = this.occupied[idx >> 6];
+
+            if ((word & bit) != 0L) {
+                return false;
+            }
+
+            this.occupied[idx >> 6] = word | bit;
+            this.count++;
+
+            return true;
+        }
+
+        boolean remove(int idx) {
+            long bit = 1L << idx;
+            long word = this.occupied[idx >> 6];
+
+            if ((word & bit) == 0L) {
+                return false;
+            }
+
+            this.occupied[idx >> 6] = word & ~bit;
+            this.count--;
+
+            return true;
+        }
+
+        boolean isEmpty() {
+            return this.count == 0;
+        }
+
+        int nextIndex(int from) {
+            int word = from >> 6;
+
+            if (word >= WORDS) {
+                return -1;
+            }
+
+            long w = this.occupied[word] & (-1L << from);
+
+            while (true) {
+                if (w != 0L) {
+                    return (word << 6) | Long.numberOfTrailingZeros(w);
+                }
+
+                if (++word >= WORDS) {
+                    return -1;
+                }
+
+                w = this.occupied[word];
+            }
+        }
+
+        void reset() {
+            // The values array does not need to be cleared as entries are only valid when their bit is set
+            Arrays.fill(this.occupied, 0L);
+
+            this.count = 0;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package me.jellysquid.mods.phosphor.common.util.math;
+
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Direction;
+
+public class BlockPosHelper {
+    // The difference between the packed positions of a block and its neighbor in each direction
+    private static final long[] OFFSETS = new long[Direction.values().length];
+
+    static {
+        long unitX = BlockPos.asLong(1, 0, 0) - BlockPos.asLong(0, 0, 0);
+        long unitY = BlockPos.asLong(0, 1, 0) - BlockPos.asLong(0, 0, 0);
+        long unitZ = BlockPos.asLong(0, 0, 1) - BlockPos.asLong(0, 0, 0);
+
+        for (Direction dir : Direction.values()) {
+            OFFSETS[dir.ordinal()] = (dir.getOffsetX() * unitX) + (dir.getOffsetY() * unitY) + (dir.getOffsetZ() * unitZ);
+        }
+    }
+
+    /**
+     * Returns the packed position of the block adjacent to {@param pos} in direction {@param dir} without unpacking the
+     * coordinates of the position. This is only valid when the adjacent block is within the same chunk section as
+     * {@param pos}, as the packed coordinates would otherwise be able to carry into each other.
+     *
+     * @return A packed position which is identical to {@link BlockPos#offset(long, Direction)}
+     */
+    public static long offsetWithinSection(long pos, Direction dir) {
+        return pos + OFFSETS[dir.ordinal()];
+    }
+
+    /**
+     * Returns true if every block adjacent to the given position is within the same chunk section as it.
+     */
+    public static boolean isInteriorOfSection(int x, int y, int z) {
+        return isInterior(x) && isInterior(y) && isInterior(z);
+    }
+
+    private static boolean isInterior(int coord) {
+        // True if the local coordinate within the section is neither 0 or 15
+        return ((coord + 1) & 14) != 0;
+    }
+}
@@ -0,0 +1,111 @@
+package me.jellysquid.mods.phosphor.common.util.sync;
+
+import it.unimi.dsi.fastutil.HashCommon;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import net.minecraft.util.math.ChunkSectionPos;
+
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * A set of locks which each guard the data belonging to a subset of the world's regions (32x32 chunk areas). Writers
+ * only need to lock the stripes containing the regions they have modified, so readers in other regions are not blocked
+ * or invalidated by them.
+ *
+ * There is a fixed number of stripes which regions are hashed into, and this can be configured with
+ * {@code -Dphosphor.storageLockStripes=<n>}. The number of stripes must be a power of two between 1 and 64, where a
+ * value of 1 uses a single lock for the entire world.
+ *
+ * Only one thread may write-lock stripes at a time.
+ */
+public class RegionStripedLock {
+    private static final int DEFAULT_STRIPES = Integer.getInteger("phosphor.storageLockStripes", 16);
+
+    private final StampedLock[] locks;
+
+    // The stamps of the currently held write locks, which are only accessed by the writer
+    private final long[] writeStamps;
+
+    private final int mask;
+
+    public RegionStripedLock() {
+        this(DEFAULT_STRIPES);
+    }
+
+    public RegionStripedLock(int stripes) {
+        if (stripes < 1 || stripes > 64 || Integer.bitCount(stripes) != 1) {
+            throw new IllegalArgumentException("Number of lock stripes must be a power of two between 1 and 64");
+        }
+
+        this.locks = new StampedLock[stripes];
+        this.writeStamps = new long[stripes];
+        this.mask = stripes - 1;
+
+        for (int i = 0; i < stripes; i++) {
+            this.locks[i] = new StampedLock();
+        }
+    }
+
+    /**
+     * Returns the lock which guards the region containing the chunk section at {@param sectionPos}.
+     */
+    public StampedLock getLock(long sectionPos) {
+        return this.locks[this.getStripe(sectionPos)];
+    }
+
+    /**
+     * Returns a bit mask of the stripes which contain any of the sections in {@param sectionPositions}.
+     */
+    public long getStripeMask(LongSet sectionPositions) {
+        if (sectionPositions.isEmpty()) {
+            return 0L;
+        }
+
+        if (this.mask == 0) {
+            return 1L;
+        }
+
+        long mask = 0L;
+
+        LongIterator it = sectionPositions.iterator();
+
+        while (it.hasNext()) {
+            mask |= 1L << this.getStripe(it.nextLong());
+        }
+
+        return mask;
+    }
+
+    /**
+     * Write-locks every stripe in {@param mask}. Stripes are always locked in the same order.
+     */
+    public void lockStripes(long mask) {
+        while (mask != 0L) {
+            int stripe = Long.numberOfTrailingZeros(mask);
+
+            this.writeStamps[stripe] = this.locks[stripe].writeLock();
+
+            mask &= mask - 1;
+        }
+    }
+
+    /**
+     * Releases the write locks held on every stripe in {@param mask}.
+     */
+    public void unlockStripes(long mask) {
+        while (mask != 0L) {
+            int stripe = Long.numberOfTrailingZeros(mask);
+
+            this.locks[stripe].unlockWrite(this.writeStamps[stripe]);
+
+            mask &= mask - 1;
+        }
+    }
+
+    private int getStripe(long sectionPos) {
+        int regionX = ChunkSectionPos.getX(sectionPos) >> 5;
+        int regionZ = ChunkSectionPos.getZ(sectionPos) >> 5;
+
+        return HashCommon.mix((regionX * 31) + regionZ) & this.mask;
+    }
+}
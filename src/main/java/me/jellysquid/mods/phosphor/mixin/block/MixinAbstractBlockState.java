@@ -2,18 +2,35 @@ package me.jellysquid.mods.phosphor.mixin.block;
 
 import me.jellysquid.mods.phosphor.common.block.BlockStateLightInfoAccess;
 import me.jellysquid.mods.phosphor.common.block.BlockStateLightInfo;
+import me.jellysquid.mods.phosphor.common.block.BlockStateLightProperties;
 import net.minecraft.block.AbstractBlock;
+import net.minecraft.block.BlockState;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 
 @Mixin(AbstractBlock.AbstractBlockState.class)
 public abstract class MixinAbstractBlockState implements BlockStateLightInfoAccess {
     @Shadow
     protected AbstractBlock.AbstractBlockState.ShapeCache shapeCache;
 
+    private int lightProperties = BlockStateLightProperties.UNCACHED;
+
+    @Inject(method = "initShapeCache", at = @At("RETURN"))
+    private void onShapeCacheInit(CallbackInfo ci) {
+        this.lightProperties = BlockStateLightProperties.compute((BlockState) (Object) this);
+    }
+
     @SuppressWarnings("ConstantConditions")
     @Override
     public BlockStateLightInfo getLightInfo() {
         return (BlockStateLightInfo) (Object) this.shapeCache;
     }
+
+    @Override
+    public int getLightProperties() {
+        return this.lightProperties;
+    }
 }
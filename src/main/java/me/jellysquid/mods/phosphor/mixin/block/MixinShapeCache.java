@@ -1,11 +1,16 @@
 package me.jellysquid.mods.phosphor.mixin.block;
 
 import me.jellysquid.mods.phosphor.common.block.BlockStateLightInfo;
+import me.jellysquid.mods.phosphor.common.util.LightUtil;
 import net.minecraft.block.AbstractBlock;
+import net.minecraft.util.math.Direction;
 import net.minecraft.util.shape.VoxelShape;
 import org.spongepowered.asm.mixin.Final;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 
 @Mixin(AbstractBlock.AbstractBlockState.ShapeCache.class)
 public class MixinShapeCache implements BlockStateLightInfo {
@@ -17,6 +22,33 @@ public class MixinShapeCache implements BlockStateLightInfo {
     @Final
     private int lightSubtracted;
 
+    // The coverage masks of each extruded face, indexed by the ordinal of each direction
+    private long[] faceCoverage;
+
+    // A bit for each direction which is set if the coverage mask of that face is exact
+    private int exactFaceCoverage;
+
+    @Inject(method = "<init>", at = @At("RETURN"))
+    private void onInit(CallbackInfo ci) {
+        VoxelShape[] faces = this.extrudedFaces;
+
+        if (faces == null) {
+            return;
+        }
+
+        long[] coverage = new long[faces.length * LightUtil.FACE_COVERAGE_WORDS];
+        int exact = 0;
+
+        for (Direction dir : Direction.values()) {
+            if (LightUtil.computeFaceCoverage(faces[dir.ordinal()], dir.getAxis(), coverage, dir.ordinal() * LightUtil.FACE_COVERAGE_WORDS)) {
+                exact |= 1 << dir.ordinal();
+            }
+        }
+
+        this.faceCoverage = coverage;
+        this.exactFaceCoverage = exact;
+    }
+
     @Override
     public VoxelShape[] getExtrudedFaces() {
         return this.extrudedFaces;
@@ -27,4 +59,13 @@ public class MixinShapeCache implements BlockStateLightInfo {
         return this.lightSubtracted;
     }
 
+    @Override
+    public long[] getFaceCoverage() {
+        return this.faceCoverage;
+    }
+
+    @Override
+    public boolean hasExactFaceCoverage(Direction dir) {
+        return (this.exactFaceCoverage & (1 << dir.ordinal())) != 0;
+    }
 }
@@ -1,19 +1,74 @@
 package me.jellysquid.mods.phosphor.mixin.chunk;
 
+import me.jellysquid.mods.phosphor.common.chunk.light.CompactChunkNibbleArray;
+import me.jellysquid.mods.phosphor.common.chunk.light.NibbleArrayPool;
+import me.jellysquid.mods.phosphor.common.chunk.light.PackedNibbleArray;
+import me.jellysquid.mods.phosphor.common.chunk.light.RecyclableChunkNibbleArray;
 import net.minecraft.world.chunk.ChunkNibbleArray;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.Overwrite;
 import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+import java.util.Arrays;
 
 /**
  * An optimized implementation of ChunkNibbleArray which uses bit-banging instead of a conditional to select
  * the right bit index of a nibble.
+ *
+ * Vanilla already avoids allocating the backing array for sections which are entirely dark. We extend this so that
+ * sections can be stored in one of three layouts:
+ * - Uniform, where every value is the same (most commonly, sky light sections which are fully lit) and only that value
+ *   is stored
+ * - Packed, where the section only contains a few distinct values and each entry is an index into a palette, see
+ *   {@link PackedNibbleArray}
+ * - Dense, the vanilla layout of 2048 bytes
+ *
+ * Writes move an array to a larger layout when needed. The smallest layout for an array is only picked when it is
+ * deserialized or copied, as that is when the array's contents have settled and the array is about to be written into
+ * again (see ChunkToNibbleArrayMap#replaceWithCopy). This avoids repeatedly switching layouts during light propagation.
+ *
+ * The dense layout is checked first so that the hot path is no more expensive than before.
+ *
+ * Dense backing arrays are taken from the {@link NibbleArrayPool} of the owning light array map where possible, and are
+ * returned to it if the array is discarded by its owner before ever being published to other threads, see
+ * {@link RecyclableChunkNibbleArray}.
  */
 @Mixin(ChunkNibbleArray.class)
-public abstract class MixinChunkNibbleArray {
+public abstract class MixinChunkNibbleArray implements CompactChunkNibbleArray, RecyclableChunkNibbleArray {
+    private static final int SIZE = NibbleArrayPool.ARRAY_SIZE;
+
     @Shadow
     protected byte[] byteArray;
 
+    // The packed storage of this array, if it has one
+    private PackedNibbleArray packed;
+
+    // The value of every entry in this array while neither the dense or packed storage are allocated
+    private int uniformLevel;
+
+    // True if the dense storage has been handed out through asByteArray(), in which case it must never be recycled. This
+    // is only tracked for arrays which have not been published, and as such, it is only ever accessed by their owner.
+    private boolean escaped;
+
+    // True once this array has been published to other threads, see RecyclableChunkNibbleArray. This is written by the
+    // owner of the array's map before the copy of the map containing it is published.
+    private boolean published;
+
+    // The pool of the owner of this array's light array map, or null if the array is not owned by one. This is only
+    // kept while the array is unpublished, and as such, it is only ever accessed by the owner.
+    private NibbleArrayPool pool;
+
+    // The generation in which this array was retired by the owner of its map, or -1 if it is in use
+    private long retiredGeneration = -1L;
+
+    @Inject(method = "<init>([B)V", at = @At("RETURN"))
+    private void onInit(byte[] bytes, CallbackInfo ci) {
+        this.compact(bytes);
+    }
+
     /**
      * @reason Avoid an additional branch.
      * @author JellySquid
@@ -23,7 +78,7 @@ public abstract class MixinChunkNibbleArray {
         byte[] arr = this.byteArray;
 
         if (arr == null) {
-            return 0;
+            return this.getCompact(idx);
         }
 
         int byteIdx = idx >> 1;
@@ -32,8 +87,18 @@ public abstract class MixinChunkNibbleArray {
         return (arr[byteIdx] >>> shift) & 15;
     }
 
+    private int getCompact(int idx) {
+        PackedNibbleArray packed = this.packed;
+
+        if (packed != null) {
+            return packed.get(idx);
+        }
+
+        return this.uniformLevel;
+    }
+
     /**
-     * @reason Avoid an additional branch.
+     * @reason Avoid an additional branch, avoid allocating storage if the value does not change.
      * @author JellySquid
      */
     @Overwrite
@@ -41,7 +106,11 @@ public abstract class MixinChunkNibbleArray {
         byte[] arr = this.byteArray;
 
         if (arr == null) {
-            this.byteArray = (arr = new byte[2048]);
+            if (this.setCompact(idx, value & 15)) {
+                return;
+            }
+
+            arr = this.byteArray;
         }
 
         int byteIdx = idx >> 1;
@@ -50,4 +119,261 @@ public abstract class MixinChunkNibbleArray {
         arr[byteIdx] = (byte) ((arr[byteIdx] & ~(15 << shift))
                 | ((value & 15) << shift));
     }
+
+    /**
+     * Tries to write a value into the uniform or packed storage, moving to a larger layout if needed.
+     *
+     * @return True if the value was written, false if the array has been moved to the dense layout and the caller
+     * must write the value into it
+     */
+    private boolean setCompact(int idx, int value) {
+        PackedNibbleArray packed = this.packed;
+
+        if (packed == null) {
+            if (value == this.uniformLevel) {
+                return true;
+            }
+
+            this.packed = packed = PackedNibbleArray.create(this.uniformLevel);
+        }
+
+        if (packed.set(idx, value)) {
+            return true;
+        }
+
+        byte[] arr = this.allocateArray();
+        packed.copyTo(arr);
+
+        this.byteArray = arr;
+        this.packed = null;
+
+        return false;
+    }
+
+    /**
+     * Vanilla code may write into the returned array and expect the changes to be seen through this array (for example,
+     * SkyLightStorage fills sections which become exposed to the sky this way), so a uniform or packed array is inflated
+     * into the dense layout, which is then kept.
+     *
+     * Published arrays are the exception, as other threads may be reading them at the same time and their layout must
+     * not change, so a copy of their contents is returned instead. The owner of a light array map gives each section a
+     * private copy of its array before writing into it again (see ChunkToNibbleArrayMap#replaceWithCopy and
+     * LightStorage#updateLightArrays), so only readers will call this on a published array.
+     *
+     * @reason Support compact arrays
+     * @author JellySquid
+     */
+    @Overwrite
+    public byte[] asByteArray() {
+        if (this.byteArray == null) {
+            byte[] arr = this.packed != null ? this.packed.toByteArray() : createFilledArray(this.uniformLevel);
+
+            if (this.published) {
+                return arr;
+            }
+
+            this.byteArray = arr;
+            this.packed = null;
+        }
+
+        // Published arrays are never recycled, and readers must not write into them
+        if (!this.published) {
+            this.escaped = true;
+        }
+
+        return this.byteArray;
+    }
+
+    /**
+     * @reason Pick the smallest layout for the copy
+     * @author JellySquid
+     */
+    @Overwrite
+    public ChunkNibbleArray copy() {
+        return this.copy(null);
+    }
+
+    @Override
+    public ChunkNibbleArray copy(NibbleArrayPool pool) {
+        byte[] arr = this.byteArray;
+
+        if (arr != null && arr.length != SIZE) {
+            return new ChunkNibbleArray(arr.clone());
+        }
+
+        ChunkNibbleArray copy = new ChunkNibbleArray();
+        CompactChunkNibbleArray compact = (CompactChunkNibbleArray) copy;
+
+        ((RecyclableChunkNibbleArray) copy).setPool(pool);
+
+        if (arr == null) {
+            if (this.packed != null) {
+                compact.setPacked(this.packed.copy());
+            } else {
+                compact.setUniform(this.uniformLevel);
+            }
+        } else {
+            int level = getUniformLevel(arr);
+
+            if (level >= 0) {
+                compact.setUniform(level);
+            } else {
+                PackedNibbleArray packed = PackedNibbleArray.tryPack(arr);
+
+                if (packed != null) {
+                    compact.setPacked(packed);
+                } else {
+                    byte[] clone = pool != null ? pool.allocate() : new byte[SIZE];
+                    System.arraycopy(arr, 0, clone, 0, SIZE);
+
+                    compact.setDense(clone);
+                }
+            }
+        }
+
+        return copy;
+    }
+
+    /**
+     * @reason Compact arrays which are not entirely zero contain data
+     * @author JellySquid
+     */
+    @Overwrite
+    public boolean isUninitialized() {
+        return this.byteArray == null && this.packed == null && this.uniformLevel == 0;
+    }
+
+    @Override
+    public boolean isUniform() {
+        return this.byteArray == null && this.packed == null;
+    }
+
+    @Override
+    public int getUniformLevel() {
+        return this.isUniform() ? this.uniformLevel : -1;
+    }
+
+    @Override
+    public void setUniform(int level) {
+        this.byteArray = null;
+        this.packed = null;
+        this.escaped = false;
+        this.uniformLevel = level & 15;
+    }
+
+    @Override
+    public void setDense(byte[] arr) {
+        this.byteArray = arr;
+        this.packed = null;
+        this.escaped = false;
+    }
+
+    @Override
+    public void setPacked(PackedNibbleArray array) {
+        this.byteArray = null;
+        this.escaped = false;
+        this.packed = array;
+    }
+
+    private void compact(byte[] arr) {
+        int level = getUniformLevel(arr);
+
+        if (level >= 0) {
+            this.setUniform(level);
+
+            return;
+        }
+
+        PackedNibbleArray packed = PackedNibbleArray.tryPack(arr);
+
+        if (packed != null) {
+            this.setPacked(packed);
+        } else {
+            // The array was provided by the caller, who may still be holding onto it
+            this.escaped = true;
+        }
+    }
+
+    @Override
+    public void markPublished() {
+        this.published = true;
+
+        // Published arrays are never written into or recycled again
+        this.pool = null;
+    }
+
+    @Override
+    public boolean isPublished() {
+        return this.published;
+    }
+
+    @Override
+    public void setPool(NibbleArrayPool pool) {
+        this.pool = pool;
+    }
+
+    @Override
+    public void retire(long generation) {
+        this.retiredGeneration = generation;
+    }
+
+    @Override
+    public void reinstate() {
+        this.retiredGeneration = -1L;
+    }
+
+    @Override
+    public void recycle(long generation) {
+        // The array may have been re-used since, and possibly retired again or published to other threads
+        if (this.retiredGeneration != generation || this.published) {
+            return;
+        }
+
+        byte[] arr = this.byteArray;
+        boolean escaped = this.escaped;
+        NibbleArrayPool pool = this.pool;
+
+        this.setUniform(0);
+        this.retiredGeneration = -1L;
+        this.pool = null;
+
+        if (pool != null && arr != null && arr.length == SIZE && !escaped) {
+            pool.release(arr);
+        }
+    }
+
+    private byte[] allocateArray() {
+        NibbleArrayPool pool = this.pool;
+
+        return pool != null ? pool.allocate() : new byte[SIZE];
+    }
+
+    private static byte[] createFilledArray(int level) {
+        byte[] arr = new byte[SIZE];
+
+        if (level != 0) {
+            Arrays.fill(arr, (byte) (level | (level << 4)));
+        }
+
+        return arr;
+    }
+
+    /**
+     * Returns the value of every nibble in the array if they are all the same, otherwise -1.
+     */
+    private static int getUniformLevel(byte[] arr) {
+        byte first = arr[0];
+
+        if (((first >> 4) & 15) != (first & 15)) {
+            return -1;
+        }
+
+        for (int i = 1; i < arr.length; i++) {
+            if (arr[i] != first) {
+                return -1;
+            }
+        }
+
+        return first & 15;
+    }
 }
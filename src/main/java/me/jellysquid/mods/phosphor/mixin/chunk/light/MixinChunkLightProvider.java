@@ -1,12 +1,22 @@
 package me.jellysquid.mods.phosphor.mixin.chunk.light;
 
-import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
 import me.jellysquid.mods.phosphor.common.block.BlockStateLightInfo;
 import me.jellysquid.mods.phosphor.common.block.BlockStateLightInfoAccess;
-import me.jellysquid.mods.phosphor.common.chunk.level.LevelUpdateListener;
+import me.jellysquid.mods.phosphor.common.block.BlockStateLightProperties;
+import me.jellysquid.mods.phosphor.common.chunk.level.PendingUpdateTracker;
+import it.unimi.dsi.fastutil.HashCommon;
+import it.unimi.dsi.fastutil.longs.LongCollection;
+import it.unimi.dsi.fastutil.longs.LongIterator;
 import me.jellysquid.mods.phosphor.common.chunk.light.LightInitializer;
+import me.jellysquid.mods.phosphor.common.chunk.light.LightProviderBatchUpdater;
 import me.jellysquid.mods.phosphor.common.chunk.light.LightProviderBlockAccess;
 import me.jellysquid.mods.phosphor.common.chunk.light.LightProviderUpdateTracker;
+import me.jellysquid.mods.phosphor.common.chunk.light.LightStorageAccess;
+import me.jellysquid.mods.phosphor.common.metrics.LightBatchTracker;
+import me.jellysquid.mods.phosphor.common.metrics.LightEngineMetrics;
+import me.jellysquid.mods.phosphor.common.util.FaceOcclusionCache;
+import me.jellysquid.mods.phosphor.common.util.LightUtil;
+import me.jellysquid.mods.phosphor.common.util.collections.SectionedLong2ByteMap;
 import net.minecraft.block.BlockState;
 import net.minecraft.block.Blocks;
 import net.minecraft.util.math.BlockPos;
@@ -15,6 +25,7 @@ import net.minecraft.util.math.ChunkSectionPos;
 import net.minecraft.util.math.Direction;
 import net.minecraft.util.shape.VoxelShape;
 import net.minecraft.util.shape.VoxelShapes;
+import net.minecraft.world.LightType;
 import net.minecraft.world.chunk.Chunk;
 import net.minecraft.world.chunk.ChunkProvider;
 import net.minecraft.world.chunk.ChunkSection;
@@ -28,15 +39,20 @@ import org.spongepowered.asm.mixin.Shadow;
 import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Inject;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
 
 import java.util.Arrays;
-import java.util.BitSet;
 
 @Mixin(ChunkLightProvider.class)
 public abstract class MixinChunkLightProvider<M extends ChunkToNibbleArrayMap<M>, S extends LightStorage<M>>
-        extends LevelPropagator implements LightProviderUpdateTracker, LightProviderBlockAccess, LightInitializer, LevelUpdateListener {
+        extends LevelPropagator implements LightProviderUpdateTracker, LightProviderBlockAccess, LightInitializer,
+        LightProviderBatchUpdater {
     private static final BlockState DEFAULT_STATE = Blocks.AIR.getDefaultState();
 
+    @Shadow
+    @Final
+    private static Direction[] DIRECTIONS;
+
     @Shadow
     @Final
     protected BlockPos.Mutable reusableBlockPos;
@@ -45,18 +61,55 @@ public abstract class MixinChunkLightProvider<M extends ChunkToNibbleArrayMap<M>
     @Final
     protected ChunkProvider chunkProvider;
 
-    private final long[] cachedChunkPos = new long[2];
-    private final ChunkSection[][] cachedChunkSections = new ChunkSection[2][];
+    @Shadow
+    @Final
+    protected LightType type;
+
+    @Shadow
+    @Final
+    protected S lightStorage;
+
+    // The length of each side of the chunk cache, which can be configured with -Dphosphor.chunkCacheSize=<n>
+    private static final int CHUNK_CACHE_SIZE = HashCommon.nextPowerOfTwo(Math.max(1, Integer.getInteger("phosphor.chunkCacheSize", 4)));
+    private static final int CHUNK_CACHE_MASK = CHUNK_CACHE_SIZE - 1;
+
+    // [VanillaCopy] Light data is stored for one section below the bottom of the world
+    private static final int MIN_LIGHT_SECTION_Y = -1;
 
-    private final Long2ObjectOpenHashMap<BitSet> buckets = new Long2ObjectOpenHashMap<>();
+    // A direct-mapped cache of the sections of each chunk, indexed by the lower bits of each chunk coordinate. This
+    // ensures any neighborhood of chunks no larger than the cache can be held at once without collisions.
+    private final long[] cachedChunkPos = new long[CHUNK_CACHE_SIZE * CHUNK_CACHE_SIZE];
+    private final ChunkSection[][] cachedChunkSections = new ChunkSection[CHUNK_CACHE_SIZE * CHUNK_CACHE_SIZE][];
 
-    private long prevChunkBucketKey = Long.MIN_VALUE;
-    private BitSet prevChunkBucketSet;
+    // A cache of the results of LightStorage#hasLight for the sections of each chunk column, indexed in the same way as
+    // the chunk cache. Each chunk column has one bit per section which is set once the result for that section is known,
+    // and one bit per section for the result itself.
+    private final long[] cachedLightColumnPos = new long[CHUNK_CACHE_SIZE * CHUNK_CACHE_SIZE];
+    private final int[] cachedLightKnownSections = new int[CHUNK_CACHE_SIZE * CHUNK_CACHE_SIZE];
+    private final int[] cachedLightPresentSections = new int[CHUNK_CACHE_SIZE * CHUNK_CACHE_SIZE];
+
+    // The set of sections which have light data only changes outside of propagation, so the cache is only used then
+    private boolean lightColumnCacheEnabled;
+
+    // The last non-empty chunk section which was accessed. Most lookups during propagation are for blocks within the
+    // same section as the previous lookup, and can skip the chunk cache entirely.
+    private long cachedSectionPos = Long.MIN_VALUE;
+    private ChunkSection cachedSection;
+
+    // The set of positions queued by a batched update, bucketed by section
+    private final SectionedLong2ByteMap batchedChecks = new SectionedLong2ByteMap(16);
+
+    private LightBatchTracker batchTracker;
 
     protected MixinChunkLightProvider(int levelCount, int expectedLevelSize, int expectedTotalSize) {
         super(levelCount, expectedLevelSize, expectedTotalSize);
     }
 
+    @Inject(method = "<init>", at = @At("RETURN"))
+    private void onInit(CallbackInfo ci) {
+        this.batchTracker = LightBatchTracker.create(this.chunkProvider, this.type);
+    }
+
     @Inject(method = "clearChunkCache", at = @At("RETURN"))
     private void onCleanup(CallbackInfo ci) {
         // This callback may be executed from the constructor above, and the object won't be initialized then
@@ -64,6 +117,68 @@ public abstract class MixinChunkLightProvider<M extends ChunkToNibbleArrayMap<M>
             Arrays.fill(this.cachedChunkPos, Long.MIN_VALUE);
             Arrays.fill(this.cachedChunkSections, null);
         }
+
+        this.cachedSectionPos = Long.MIN_VALUE;
+        this.cachedSection = null;
+    }
+
+    @Inject(method = "doLightUpdates", at = @At("HEAD"))
+    private void onDoLightUpdates(int maxSteps, boolean doSkylight, boolean skipEdgeLightPropagation, CallbackInfoReturnable<Integer> cir) {
+        if (LightEngineMetrics.ENABLED) {
+            LightEngineMetrics.PENDING_UPDATES_PER_BATCH.record(this.getPendingUpdateCount());
+        }
+
+        this.batchTracker.beginBatch(maxSteps);
+    }
+
+    @Inject(method = "doLightUpdates", at = @At("RETURN"))
+    private void onDoLightUpdatesReturn(int maxSteps, boolean doSkylight, boolean skipEdgeLightPropagation, CallbackInfoReturnable<Integer> cir) {
+        this.batchTracker.endBatch(cir.getReturnValueI());
+    }
+
+    @Inject(
+        method = "doLightUpdates",
+        at = @At(value = "INVOKE", target = "Lnet/minecraft/world/chunk/light/ChunkLightProvider;applyPendingUpdates(I)I")
+    )
+    private void preApplyPendingUpdates(int maxSteps, boolean doSkylight, boolean skipEdgeLightPropagation, CallbackInfoReturnable<Integer> cir) {
+        this.batchTracker.beginPropagation();
+
+        Arrays.fill(this.cachedLightColumnPos, Long.MIN_VALUE);
+        this.lightColumnCacheEnabled = true;
+    }
+
+    @Inject(
+        method = "doLightUpdates",
+        at = @At(value = "INVOKE", target = "Lnet/minecraft/world/chunk/light/ChunkLightProvider;applyPendingUpdates(I)I", shift = At.Shift.AFTER)
+    )
+    private void postApplyPendingUpdates(int maxSteps, boolean doSkylight, boolean skipEdgeLightPropagation, CallbackInfoReturnable<Integer> cir) {
+        this.batchTracker.endPropagation();
+
+        this.lightColumnCacheEnabled = false;
+    }
+
+    @Inject(
+        method = "doLightUpdates",
+        at = @At(value = "INVOKE", target = "Lnet/minecraft/world/chunk/light/LightStorage;updateLightArrays(Lnet/minecraft/world/chunk/light/ChunkLightProvider;ZZ)V")
+    )
+    private void preUpdateLightArrays(int maxSteps, boolean doSkylight, boolean skipEdgeLightPropagation, CallbackInfoReturnable<Integer> cir) {
+        this.batchTracker.beginArrayUpdate();
+    }
+
+    @Inject(
+        method = "doLightUpdates",
+        at = @At(value = "INVOKE", target = "Lnet/minecraft/world/chunk/light/LightStorage;updateLightArrays(Lnet/minecraft/world/chunk/light/ChunkLightProvider;ZZ)V", shift = At.Shift.AFTER)
+    )
+    private void postUpdateLightArrays(int maxSteps, boolean doSkylight, boolean skipEdgeLightPropagation, CallbackInfoReturnable<Integer> cir) {
+        this.batchTracker.endArrayUpdate();
+    }
+
+    @Inject(
+        method = "doLightUpdates",
+        at = @At(value = "INVOKE", target = "Lnet/minecraft/world/chunk/light/LightStorage;notifyChunkProvider()V")
+    )
+    private void preNotifyChunkProvider(int maxSteps, boolean doSkylight, boolean skipEdgeLightPropagation, CallbackInfoReturnable<Integer> cir) {
+        this.batchTracker.onFlush(((LightStorageAccess) this.lightStorage).getDirtySections());
     }
 
     // [VanillaCopy] method_20479
@@ -73,32 +188,97 @@ public abstract class MixinChunkLightProvider<M extends ChunkToNibbleArrayMap<M>
             return DEFAULT_STATE;
         }
 
-        final long chunkPos = ChunkPos.toLong(x >> 4, z >> 4);
-        final long[] cachedChunkPos = this.cachedChunkPos;
+        final int chunkX = x >> 4;
+        final int chunkZ = z >> 4;
 
-        ChunkSection[] sections = null;
+        final long sectionPos = ChunkSectionPos.asLong(chunkX, y >> 4, chunkZ);
 
-        for (int i = 0; i < 2; i++) {
-            if (cachedChunkPos[i] == chunkPos) {
-                sections = this.cachedChunkSections[i];
-                break;
+        if (this.cachedSectionPos == sectionPos) {
+            if (LightEngineMetrics.ENABLED) {
+                LightEngineMetrics.BLOCK_STATE_CACHE_HITS.increment();
             }
+
+            return this.cachedSection.getBlockState(x & 15, y & 15, z & 15);
+        }
+
+        final long chunkPos = ChunkPos.toLong(chunkX, chunkZ);
+        final int cacheIdx = getChunkCacheIndex(chunkX, chunkZ);
+
+        ChunkSection[] sections = null;
+
+        if (this.cachedChunkPos[cacheIdx] == chunkPos) {
+            sections = this.cachedChunkSections[cacheIdx];
         }
 
         if (sections != null) {
+            if (LightEngineMetrics.ENABLED) {
+                LightEngineMetrics.BLOCK_STATE_CACHE_HITS.increment();
+            }
+
             final ChunkSection section = sections[y >> 4];
 
             if (section == null) {
                 return DEFAULT_STATE;
             }
 
+            this.cachedSectionPos = sectionPos;
+            this.cachedSection = section;
+
             return section.getBlockState(x & 15, y & 15, z & 15);
         } else {
-            return this.getBlockStateFallback(chunkPos, x, y, z);
+            return this.getBlockStateFallback(chunkPos, cacheIdx, x, y, z);
+        }
+    }
+
+    @Override
+    public ChunkSection getSectionForLighting(int x, int y, int z) {
+        if (y < 0 || y >= 256) {
+            return null;
+        }
+
+        final int chunkX = x >> 4;
+        final int chunkZ = z >> 4;
+
+        final long sectionPos = ChunkSectionPos.asLong(chunkX, y >> 4, chunkZ);
+
+        if (this.cachedSectionPos == sectionPos) {
+            return this.cachedSection;
+        }
+
+        final long chunkPos = ChunkPos.toLong(chunkX, chunkZ);
+        final int cacheIdx = getChunkCacheIndex(chunkX, chunkZ);
+
+        ChunkSection[] sections = null;
+
+        if (this.cachedChunkPos[cacheIdx] == chunkPos) {
+            sections = this.cachedChunkSections[cacheIdx];
+        }
+
+        if (sections == null) {
+            this.getBlockStateFallback(chunkPos, cacheIdx, x, y, z);
+
+            sections = this.cachedChunkSections[cacheIdx];
+
+            if (sections == null) {
+                return null;
+            }
         }
+
+        final ChunkSection section = sections[y >> 4];
+
+        if (section != null) {
+            this.cachedSectionPos = sectionPos;
+            this.cachedSection = section;
+        }
+
+        return section;
     }
 
-    private BlockState getBlockStateFallback(long chunkPos, int x, int y, int z) {
+    private BlockState getBlockStateFallback(long chunkPos, int cacheIdx, int x, int y, int z) {
+        if (LightEngineMetrics.ENABLED) {
+            LightEngineMetrics.BLOCK_STATE_CACHE_MISSES.increment();
+        }
+
         final Chunk chunk = (Chunk) this.chunkProvider.getChunk(x >> 4, z >> 4);
         final ChunkSection[] sections;
 
@@ -116,24 +296,63 @@ public abstract class MixinChunkLightProvider<M extends ChunkToNibbleArrayMap<M>
             sections = null;
         }
 
-        final ChunkSection[][] cachedSections = this.cachedChunkSections;
-        cachedSections[1] = cachedSections[0];
-        cachedSections[0] = sections;
-
-        final long[] cachedCoords = this.cachedChunkPos;
-        cachedCoords[1] = cachedCoords[0];
-        cachedCoords[0] = chunkPos;
+        this.cachedChunkSections[cacheIdx] = sections;
+        this.cachedChunkPos[cacheIdx] = chunkPos;
 
         return blockState;
     }
 
+    /**
+     * Light is only ever propagated between sections which have light data, so this is checked for every neighbor in
+     * another section. During propagation, the set of sections with light data does not change, and the result for
+     * each section is remembered in a bit-field for its chunk column.
+     */
+    @Override
+    public boolean hasSectionLight(long sectionPos) {
+        int sectionY = ChunkSectionPos.getY(sectionPos) - MIN_LIGHT_SECTION_Y;
+
+        if (!this.lightColumnCacheEnabled || sectionY < 0 || sectionY >= 32) {
+            return this.lightStorage.hasLight(sectionPos);
+        }
+
+        int chunkX = ChunkSectionPos.getX(sectionPos);
+        int chunkZ = ChunkSectionPos.getZ(sectionPos);
+
+        long columnPos = ChunkPos.toLong(chunkX, chunkZ);
+        int cacheIdx = getChunkCacheIndex(chunkX, chunkZ);
+
+        int bit = 1 << sectionY;
+
+        if (this.cachedLightColumnPos[cacheIdx] != columnPos) {
+            this.cachedLightColumnPos[cacheIdx] = columnPos;
+            this.cachedLightKnownSections[cacheIdx] = 0;
+            this.cachedLightPresentSections[cacheIdx] = 0;
+        } else if ((this.cachedLightKnownSections[cacheIdx] & bit) != 0) {
+            return (this.cachedLightPresentSections[cacheIdx] & bit) != 0;
+        }
+
+        boolean hasLight = this.lightStorage.hasLight(sectionPos);
+
+        this.cachedLightKnownSections[cacheIdx] |= bit;
+
+        if (hasLight) {
+            this.cachedLightPresentSections[cacheIdx] |= bit;
+        }
+
+        return hasLight;
+    }
+
+    private static int getChunkCacheIndex(int chunkX, int chunkZ) {
+        return ((chunkZ & CHUNK_CACHE_MASK) * CHUNK_CACHE_SIZE) + (chunkX & CHUNK_CACHE_MASK);
+    }
+
     // [VanillaCopy] method_20479
     @Override
     public int getSubtractedLight(BlockState state, int x, int y, int z) {
-        BlockStateLightInfo info = ((BlockStateLightInfoAccess) state).getLightInfo();
+        int props = ((BlockStateLightInfoAccess) state).getLightProperties();
 
-        if (info != null) {
-            return info.getLightSubtracted();
+        if (BlockStateLightProperties.isCached(props)) {
+            return BlockStateLightProperties.getOpacity(props);
         } else {
             return this.getSubtractedLightFallback(state, x, y, z);
         }
@@ -146,18 +365,27 @@ public abstract class MixinChunkLightProvider<M extends ChunkToNibbleArrayMap<M>
     // [VanillaCopy] method_20479
     @Override
     public VoxelShape getOpaqueShape(BlockState state, int x, int y, int z, Direction dir) {
-        if (state != null && state.hasSidedTransparency()) {
-            BlockStateLightInfo info = ((BlockStateLightInfoAccess) state).getLightInfo();
+        if (state == null) {
+            return VoxelShapes.empty();
+        }
 
-            if (info != null) {
-                VoxelShape[] extrudedFaces = info.getExtrudedFaces();
+        int props = ((BlockStateLightInfoAccess) state).getLightProperties();
 
-                if (extrudedFaces != null) {
-                    return extrudedFaces[dir.ordinal()];
-                }
-            } else {
+        if (!BlockStateLightProperties.isCached(props)) {
+            if (state.hasSidedTransparency()) {
                 return this.getOpaqueShapeFallback(state, x, y, z, dir);
             }
+        } else if (BlockStateLightProperties.hasSidedTransparency(props)) {
+            // Full faces are returned as the full cube shape so that callers can exit early with an identity check
+            if (BlockStateLightProperties.isFullFace(props, dir)) {
+                return VoxelShapes.fullCube();
+            }
+
+            VoxelShape[] extrudedFaces = ((BlockStateLightInfoAccess) state).getLightInfo().getExtrudedFaces();
+
+            if (extrudedFaces != null) {
+                return extrudedFaces[dir.ordinal()];
+            }
         }
 
         return VoxelShapes.empty();
@@ -167,117 +395,152 @@ public abstract class MixinChunkLightProvider<M extends ChunkToNibbleArrayMap<M>
         return VoxelShapes.extrudeFace(state.getCullingShape(this.chunkProvider.getWorld(), this.reusableBlockPos.set(x, y, z)), dir);
     }
 
-    @Override
-    public void spreadLightInto(long a, long b) {
-        this.updateLevel(a, b, this.getPropagatedLevel(a, b, this.getLevel(a)), false);
-        this.updateLevel(b, a, this.getPropagatedLevel(b, a, this.getLevel(b)), false);
-    }
-
     /**
-     * The vanilla implementation for removing pending light updates requires iterating over either every queued light
-     * update (<8K checks) or every block position within a sub-chunk (16^3 checks). This is painfully slow and results
-     * in a tremendous amount of CPU time being spent here when chunks are unloaded on the client and server.
-     *
-     * To work around this, we maintain a bit-field of queued updates by chunk position so we can simply select every
-     * light update within a section without excessive iteration. The bit-field only requires 64 bytes of memory per
-     * section with queued updates, and does not require expensive hashing in order to track updates within it. In order
-     * to avoid as much overhead as possible when looking up a bit-field for a given chunk section, the previous lookup
-     * is cached and used where possible. The integer key for each bucket can be computed by performing a simple bit
-     * mask over the already-encoded block position value.
+     * Most pairs of faces can be checked using the packed light properties of each block state, and faces which only
+     * partially cover the block (such as those of slabs and stairs) are checked using their coverage masks. Faces which
+     * are not aligned to the grid of the masks are checked through the {@link FaceOcclusionCache}, and the shapes of each
+     * face are only merged directly when the properties of a block state depend on the world.
      */
     @Override
-    public void cancelUpdatesForChunk(long sectionPos) {
-        long key = getBucketKeyForSection(sectionPos);
-        BitSet bits = this.removeChunkBucket(key);
+    public boolean isFaceOccluded(BlockState fromState, int fromX, int fromY, int fromZ,
+                                  BlockState toState, int toX, int toY, int toZ, Direction dir) {
+        if (fromState != null && toState != null) {
+            int fromProps = ((BlockStateLightInfoAccess) fromState).getLightProperties();
+            int toProps = ((BlockStateLightInfoAccess) toState).getLightProperties();
 
-        if (bits != null && !bits.isEmpty()) {
-            int startX = ChunkSectionPos.getX(sectionPos) << 4;
-            int startY = ChunkSectionPos.getY(sectionPos) << 4;
-            int startZ = ChunkSectionPos.getZ(sectionPos) << 4;
+            if (BlockStateLightProperties.isCached(fromProps) && BlockStateLightProperties.isCached(toProps)) {
+                boolean fromSided = BlockStateLightProperties.hasSidedTransparency(fromProps);
+                boolean toSided = BlockStateLightProperties.hasSidedTransparency(toProps);
 
-            for (int i = bits.nextSetBit(0); i != -1; i = bits.nextSetBit(i + 1)) {
-                int x = (i >> 8) & 15;
-                int y = (i >> 4) & 15;
-                int z = i & 15;
+                Direction opposite = dir.getOpposite();
 
-                this.removePendingUpdate(BlockPos.asLong(startX + x, startY + y, startZ + z));
-            }
-        }
-    }
+                if (fromSided && BlockStateLightProperties.isFullFace(fromProps, dir)) {
+                    return true;
+                }
 
-    @Override
-    public void onPendingUpdateRemoved(long blockPos) {
-        long key = getBucketKeyForBlock(blockPos);
+                if (toSided && BlockStateLightProperties.isFullFace(toProps, opposite)) {
+                    return true;
+                }
+
+                // If either face is empty, the other face alone would need to be full
+                if (!fromSided || !toSided) {
+                    return false;
+                }
 
-        BitSet bits;
+                BlockStateLightInfo fromInfo = ((BlockStateLightInfoAccess) fromState).getLightInfo();
+                BlockStateLightInfo toInfo = ((BlockStateLightInfoAccess) toState).getLightInfo();
 
-        if (this.prevChunkBucketKey == key) {
-            bits = this.prevChunkBucketSet;
-        } else {
-            bits = this.buckets.get(key);
+                long[] fromCoverage = fromInfo.getFaceCoverage();
+                long[] toCoverage = toInfo.getFaceCoverage();
 
-            if (bits == null) {
-                return;
+                // Blocks with sided transparency but without extruded faces have empty faces
+                if (fromCoverage == null || toCoverage == null) {
+                    return false;
+                }
+
+                if (fromInfo.hasExactFaceCoverage(dir) && toInfo.hasExactFaceCoverage(opposite)) {
+                    return LightUtil.unionCoversFullFace(fromCoverage, dir.ordinal() * LightUtil.FACE_COVERAGE_WORDS,
+                            toCoverage, opposite.ordinal() * LightUtil.FACE_COVERAGE_WORDS);
+                }
+
+                // The extruded faces of cached block states are never re-created, so the result can be memoized
+                return FaceOcclusionCache.unionCoversFullCube(fromInfo.getExtrudedFaces()[dir.ordinal()],
+                        toInfo.getExtrudedFaces()[opposite.ordinal()]);
             }
         }
 
-        bits.clear(getLocalIndex(blockPos));
+        VoxelShape fromShape = this.getOpaqueShape(fromState, fromX, fromY, fromZ, dir);
+        VoxelShape toShape = this.getOpaqueShape(toState, toX, toY, toZ, dir.getOpposite());
 
-        if (bits.isEmpty()) {
-            this.removeChunkBucket(key);
-        }
+        return LightUtil.unionCoversFullCube(fromShape, toShape);
     }
 
     @Override
-    public void onPendingUpdateAdded(long blockPos) {
-        long key = getBucketKeyForBlock(blockPos);
-
-        BitSet bits;
-
-        if (this.prevChunkBucketKey == key) {
-            bits = this.prevChunkBucketSet;
-        } else {
-            bits = this.buckets.get(key);
-
-            if (bits == null) {
-                this.buckets.put(key, bits = new BitSet(16 * 16 * 16));
-            }
-
-            this.prevChunkBucketKey = key;
-            this.prevChunkBucketSet = bits;
-        }
-
-        bits.set(getLocalIndex(blockPos));
+    public void spreadLightInto(long a, long b) {
+        this.updateLevel(a, b, this.getPropagatedLevel(a, b, this.getLevel(a)), false);
+        this.updateLevel(b, a, this.getPropagatedLevel(b, a, this.getLevel(b)), false);
     }
 
-    // Used to mask a long-encoded block position into a bucket key by dropping the first 4 bits of each component
-    private static final long BLOCK_TO_BUCKET_KEY_MASK = ~BlockPos.asLong(15, 15, 15);
+    /**
+     * [VanillaCopy] ChunkLightProvider#checkBlock(BlockPos), but the positions (and their neighbors) are first collected
+     * into a set which is bucketed by chunk section. This removes the duplicate checks which would otherwise be queued
+     * for every block sharing a face with another changed block, and allows the light updates of each section to be
+     * queued together.
+     */
+    @Override
+    public void checkBlocks(LongCollection positions) {
+        SectionedLong2ByteMap checks = this.batchedChecks;
 
-    private long getBucketKeyForBlock(long blockPos) {
-        return blockPos & BLOCK_TO_BUCKET_KEY_MASK;
-    }
+        LongIterator it = positions.iterator();
 
-    private long getBucketKeyForSection(long sectionPos) {
-        return BlockPos.asLong(ChunkSectionPos.getX(sectionPos) << 4, ChunkSectionPos.getY(sectionPos) << 4, ChunkSectionPos.getZ(sectionPos) << 4);
-    }
+        while (it.hasNext()) {
+            long pos = it.nextLong();
 
-    private BitSet removeChunkBucket(long key) {
-        BitSet set = this.buckets.remove(key);
+            checks.put(pos, (byte) 0);
 
-        if (this.prevChunkBucketSet == set) {
-            this.prevChunkBucketKey = Long.MIN_VALUE;
-            this.prevChunkBucketSet = null;
+            for (Direction dir : DIRECTIONS) {
+                checks.put(BlockPos.offset(pos, dir), (byte) 0);
+            }
         }
 
-        return set;
+        try {
+            checks.forEachKey(this::resetLevel);
+        } finally {
+            checks.clear();
+        }
     }
 
-    // Finds the bit-flag index of a local position within a chunk section
-    private static int getLocalIndex(long blockPos) {
-        int x = BlockPos.unpackLongX(blockPos) & 15;
-        int y = BlockPos.unpackLongY(blockPos) & 15;
-        int z = BlockPos.unpackLongZ(blockPos) & 15;
+    /**
+     * Every position within the volume and the blocks sharing a face with it are checked, just as if
+     * {@link ChunkLightProvider#checkBlock(BlockPos)} had been called for every position. The volume is visited section
+     * by section, and positions shared between neighboring blocks are only queued once.
+     */
+    @Override
+    public void checkBlocks(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        for (int sectionY = (minY - 1) >> 4; sectionY <= (maxY + 1) >> 4; sectionY++) {
+            for (int sectionZ = (minZ - 1) >> 4; sectionZ <= (maxZ + 1) >> 4; sectionZ++) {
+                for (int sectionX = (minX - 1) >> 4; sectionX <= (maxX + 1) >> 4; sectionX++) {
+                    int startX = Math.max(minX - 1, sectionX << 4);
+                    int startY = Math.max(minY - 1, sectionY << 4);
+                    int startZ = Math.max(minZ - 1, sectionZ << 4);
+
+                    int endX = Math.min(maxX + 1, (sectionX << 4) + 15);
+                    int endY = Math.min(maxY + 1, (sectionY << 4) + 15);
+                    int endZ = Math.min(maxZ + 1, (sectionZ << 4) + 15);
+
+                    for (int y = startY; y <= endY; y++) {
+                        int outsideY = (y < minY || y > maxY) ? 1 : 0;
+
+                        for (int z = startZ; z <= endZ; z++) {
+                            int outsideZ = (z < minZ || z > maxZ) ? 1 : 0;
+
+                            for (int x = startX; x <= endX; x++) {
+                                int outsideX = (x < minX || x > maxX) ? 1 : 0;
+
+                                // Blocks which only touch the edges or corners of the volume do not need to be checked
+                                if (outsideX + outsideY + outsideZ <= 1) {
+                                    this.resetLevel(BlockPos.asLong(x, y, z));
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
 
-        return (x << 8) | (y << 4) | z;
+    /**
+     * The vanilla implementation for removing pending light updates requires iterating over either every queued light
+     * update (<8K checks) or every block position within a sub-chunk (16^3 checks). This is painfully slow and results
+     * in a tremendous amount of CPU time being spent here when chunks are unloaded on the client and server.
+     *
+     * To work around this, the queue of pending updates for light providers is replaced with one which is bucketed by
+     * chunk section (see {@link MixinLevelPropagator}), and each bucket keeps a bit-field of the positions within it
+     * which have queued updates. This allows us to select every light update within a section without excessive
+     * iteration or hashing, and without needing to track the queued updates a second time.
+     */
+    @Override
+    public void cancelUpdatesForChunk(long sectionPos) {
+        ((PendingUpdateTracker) this).removePendingUpdatesInSection(sectionPos);
     }
 }
@@ -1,17 +1,24 @@
 package me.jellysquid.mods.phosphor.mixin.chunk.light;
 
+import me.jellysquid.mods.phosphor.common.block.BlockStateLightInfoAccess;
+import me.jellysquid.mods.phosphor.common.block.BlockStateLightProperties;
 import me.jellysquid.mods.phosphor.common.chunk.level.LevelPropagatorExtended;
+import me.jellysquid.mods.phosphor.common.chunk.level.PendingUpdateTracker;
 import me.jellysquid.mods.phosphor.common.chunk.light.LightProviderBlockAccess;
+import me.jellysquid.mods.phosphor.common.chunk.light.LightStorageAccess;
 import me.jellysquid.mods.phosphor.common.util.LightUtil;
+import me.jellysquid.mods.phosphor.common.util.math.BlockPosHelper;
 import me.jellysquid.mods.phosphor.common.util.math.ChunkSectionPosHelper;
 import me.jellysquid.mods.phosphor.common.util.math.DirectionHelper;
 import net.minecraft.block.BlockState;
 import net.minecraft.block.Blocks;
 import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkSectionPos;
 import net.minecraft.util.math.Direction;
 import net.minecraft.util.shape.VoxelShape;
 import net.minecraft.util.shape.VoxelShapes;
 import net.minecraft.world.LightType;
+import net.minecraft.world.chunk.ChunkNibbleArray;
 import net.minecraft.world.chunk.ChunkProvider;
 import net.minecraft.world.chunk.light.ChunkLightProvider;
 import net.minecraft.world.chunk.light.ChunkSkyLightProvider;
@@ -27,6 +34,8 @@ import org.spongepowered.asm.mixin.injection.callback.LocalCapture;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
 
+import java.util.Arrays;
+
 import static net.minecraft.util.math.ChunkSectionPos.getLocalCoord;
 import static net.minecraft.util.math.ChunkSectionPos.getSectionCoord;
 
@@ -49,6 +58,9 @@ public abstract class MixinChunkSkyLightProvider extends ChunkLightProvider<SkyL
 
     private int counterBranchA, counterBranchB, counterBranchC;
 
+    // Scratch space for the block states of a run of blocks lit by propagateFullLightDown, indexed by their local Y
+    private final BlockState[] fillStates = new BlockState[16];
+
     /**
      * This breaks up the call to method_20479 into smaller parts so we do not have to pass a mutable heap object
      * to the method in order to extract the light result. This has a few other advantages, allowing us to:
@@ -119,14 +131,8 @@ public abstract class MixinChunkSkyLightProvider extends ChunkLightProvider<SkyL
         if (!airPropagation) {
             // If the two blocks are directly adjacent...
             if (dir != null) {
-                VoxelShape toShape = this.getOpaqueShape(toState, toX, toY, toZ, dir.getOpposite());
-
-                if (toShape != VoxelShapes.fullCube()) {
-                    VoxelShape fromShape = this.getOpaqueShape(fromState, fromX, fromY, fromZ, dir);
-
-                    if (LightUtil.unionCoversFullCube(fromShape, toShape)) {
-                        ci.setReturnValue(15);
-                    }
+                if (this.isFaceOccluded(fromState, fromX, fromY, fromZ, toState, toX, toY, toZ, dir)) {
+                    ci.setReturnValue(15);
                 }
             } else {
                 VoxelShape toShape = this.getOpaqueShape(toState, toX, toY, toZ, altDir.getOpposite());
@@ -195,7 +201,13 @@ public abstract class MixinChunkSkyLightProvider extends ChunkLightProvider<SkyL
         // Fast-path: Use much simpler logic if we do not need to access adjacent chunks
         if (localX > 0 && localX < 15 && localY > 0 && localY < 15 && localZ > 0 && localZ < 15) {
             for (Direction dir : DIRECTIONS) {
-                this.propagateLevel(this.fromId, fromState, BlockPos.asLong(x + dir.getOffsetX(), y + dir.getOffsetY(), z + dir.getOffsetZ()), targetLevel, mergeAsMin);
+                long toId = BlockPosHelper.offsetWithinSection(this.fromId, dir);
+
+                if (dir == Direction.DOWN && mergeAsMin && targetLevel == 0) {
+                    this.propagateFullLightDown(this.fromId, fromState, this.x, y, this.z);
+                } else {
+                    this.propagateLevel(this.fromId, fromState, toId, targetLevel, mergeAsMin);
+                }
             }
 
             ci.cancel();
@@ -270,7 +282,7 @@ public abstract class MixinChunkSkyLightProvider extends ChunkLightProvider<SkyL
         )
     )
     private boolean optLookup1(final SkyLightStorage lightStorage, final long chunkY) {
-        return lightStorage.hasLight(ChunkSectionPosHelper.updateYLong(this.chunkId, Math.toIntExact(chunkY)));
+        return this.hasSectionLight(ChunkSectionPosHelper.updateYLong(this.chunkId, Math.toIntExact(chunkY)));
     }
 
     @Redirect(
@@ -282,7 +294,7 @@ public abstract class MixinChunkSkyLightProvider extends ChunkLightProvider<SkyL
         )
     )
     private boolean optLookup2(final SkyLightStorage lightStorage, final long chunkY) {
-        return lightStorage.hasLight(ChunkSectionPosHelper.updateYLong(this.chunkId, Math.toIntExact(chunkY)));
+        return this.hasSectionLight(ChunkSectionPosHelper.updateYLong(this.chunkId, Math.toIntExact(chunkY)));
     }
 
     @Redirect(
@@ -294,7 +306,151 @@ public abstract class MixinChunkSkyLightProvider extends ChunkLightProvider<SkyL
         )
     )
     private void propLevelY1(ChunkSkyLightProvider self, long id, long belowY, int level, boolean decrease) {
-        this.propagateLevel(this.fromId, fromState, BlockPos.asLong(x, Math.toIntExact(belowY), z), level, decrease);
+        int toY = Math.toIntExact(belowY);
+
+        // The block below may be in a lower section if the sections in between have no light data
+        if (decrease && level == 0 && toY == this.y - 1) {
+            this.propagateFullLightDown(this.fromId, this.fromState, this.x, this.y, this.z);
+        } else {
+            this.propagateLevel(this.fromId, fromState, BlockPos.asLong(x, toY, z), level, decrease);
+        }
+    }
+
+    /**
+     * Propagates full sky light from the block at {@param fromId} to the block directly below it.
+     *
+     * Full sky light travels straight down through transparent blocks unchanged, so rather than adding each block of an
+     * open column to the queue of pending updates and then immediately taking it out again, the run of blocks below
+     * which full sky light reaches is found first and then lit at once, with the same result as
+     * LevelPropagator#applyPendingUpdates would have once each block reached the front of the queue:
+     * - The first block of the run is written through the light storage, which copies the section's light array if it
+     *   is shared with readers and marks the sections around the block as dirty. The run never leaves the section
+     *   vertically, so writing the other blocks through the storage would mark the same sections, and instead they are
+     *   written straight into the section's light array.
+     * - Light spreading sideways from each block of the run still goes through the queue, except into neighbors within
+     *   the section which are already fully lit and have no pending update, which it would leave unchanged.
+     * - The block below the end of the run goes through the queue.
+     * Each block lit here is counted against the step budget of the current batch of updates, as if it had been taken
+     * from the queue.
+     *
+     * The run stops before the bottom block of the section, as light leaving that block downwards may need to skip
+     * over sections without light data, which only vanilla's implementation handles.
+     */
+    private void propagateFullLightDown(long fromId, BlockState fromState, int x, int y, int z) {
+        long sectionPos = ChunkSectionPos.asLong(x >> 4, y >> 4, z >> 4);
+
+        LightStorageAccess storage = (LightStorageAccess) this.lightStorage;
+        ChunkNibbleArray lightArray = storage.getCachedLightArray(sectionPos);
+
+        int localX = x & 15;
+        int localZ = z & 15;
+
+        BlockState[] states = this.fillStates;
+        BlockState state = fromState;
+
+        int bottomY = y;
+
+        if (lightArray != null) {
+            while ((bottomY & 15) >= 2) {
+                int belowY = bottomY - 1;
+                BlockState belowState = this.getFillableState(state, x, belowY, z);
+
+                if (belowState == null || lightArray.get(localX, belowY & 15, localZ) == 15 ||
+                        ((PendingUpdateTracker) this).hasPendingUpdate(BlockPos.asLong(x, belowY, z))) {
+                    break;
+                }
+
+                states[belowY & 15] = belowState;
+                state = belowState;
+
+                bottomY = belowY;
+            }
+        }
+
+        if (bottomY == y) {
+            this.propagateLevel(fromId, fromState, BlockPos.asLong(x, y - 1, z), 0, true);
+
+            return;
+        }
+
+        this.setLevel(BlockPos.asLong(x, y - 1, z), 0);
+
+        // The section's light array may have been replaced by a copy for writing
+        lightArray = storage.getCachedLightArray(sectionPos);
+
+        for (int localY = (y - 2) & 15; localY >= (bottomY & 15); localY--) {
+            lightArray.set(localX, localY, localZ, 15);
+        }
+
+        for (int blockY = y - 1; blockY >= bottomY; blockY--) {
+            // The block above is the block we came from, which is already fully lit
+            this.propagateFullLightHorizontally(BlockPos.asLong(x, blockY, z), states[blockY & 15], x, blockY, z, lightArray);
+        }
+
+        ((PendingUpdateTracker) this).consumeSteps(y - bottomY);
+
+        this.propagateLevel(BlockPos.asLong(x, bottomY, z), states[bottomY & 15], BlockPos.asLong(x, bottomY - 1, z), 0, true);
+
+        // Don't keep the block states of the chunk alive
+        Arrays.fill(states, null);
+    }
+
+    // [VanillaCopy] ChunkSkyLightProvider#propagateLevel(long, int, boolean), horizontal neighbours only
+    private void propagateFullLightHorizontally(long id, BlockState state, int x, int y, int z, ChunkNibbleArray lightArray) {
+        long chunk = ChunkSectionPos.fromGlobalPos(id);
+
+        for (Direction dir : HORIZONTAL_DIRECTIONS) {
+            int adjX = x + dir.getOffsetX();
+            int adjZ = z + dir.getOffsetZ();
+
+            long adjId = BlockPos.asLong(adjX, y, adjZ);
+            long adjChunk = ChunkSectionPos.fromGlobalPos(adjId);
+
+            if (chunk == adjChunk) {
+                // Propagating full light into a block which is already fully lit and not waiting in the queue does nothing
+                if (lightArray.get(adjX & 15, y & 15, adjZ & 15) == 15 && !((PendingUpdateTracker) this).hasPendingUpdate(adjId)) {
+                    continue;
+                }
+
+                this.propagateLevel(id, state, adjId, 0, true);
+            } else if (this.hasSectionLight(adjChunk)) {
+                this.propagateLevel(id, state, adjId, 0, true);
+            }
+        }
+    }
+
+    /**
+     * Returns the block state of the block below {@param fromState} if full sky light would reach it unchanged,
+     * otherwise null. This is only the case when neither block has a shape which must be considered and the block
+     * below is fully transparent.
+     */
+    private BlockState getFillableState(BlockState fromState, int toX, int toY, int toZ) {
+        if (fromState == null) {
+            return null;
+        }
+
+        BlockState toState = this.getBlockStateForLighting(toX, toY, toZ);
+
+        if (toState == null) {
+            return null;
+        }
+
+        int fromProps = ((BlockStateLightInfoAccess) fromState).getLightProperties();
+        int toProps = ((BlockStateLightInfoAccess) toState).getLightProperties();
+
+        if (!BlockStateLightProperties.isCached(fromProps) || !BlockStateLightProperties.isCached(toProps)) {
+            return null;
+        }
+
+        if (BlockStateLightProperties.hasSidedTransparency(fromProps) || BlockStateLightProperties.hasSidedTransparency(toProps)) {
+            return null;
+        }
+
+        if (BlockStateLightProperties.getOpacity(toProps) != 0) {
+            return null;
+        }
+
+        return toState;
     }
 
     @Redirect(
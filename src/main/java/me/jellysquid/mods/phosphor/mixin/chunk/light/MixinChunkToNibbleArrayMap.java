@@ -1,7 +1,13 @@
 package me.jellysquid.mods.phosphor.mixin.chunk.light;
 
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import me.jellysquid.mods.phosphor.common.chunk.light.NibbleArrayPool;
+import me.jellysquid.mods.phosphor.common.chunk.light.RecyclableChunkNibbleArray;
 import me.jellysquid.mods.phosphor.common.chunk.light.SharedNibbleArrayMap;
-import me.jellysquid.mods.phosphor.common.util.collections.DoubleBufferedLong2ObjectHashMap;
+import me.jellysquid.mods.phosphor.common.metrics.LightEngineMetrics;
+import me.jellysquid.mods.phosphor.common.util.collections.DoubleBufferedSectionColumnMap;
 import net.minecraft.world.chunk.ChunkNibbleArray;
 import net.minecraft.world.chunk.ChunkToNibbleArrayMap;
 import org.spongepowered.asm.mixin.*;
@@ -23,9 +29,20 @@ public abstract class MixinChunkToNibbleArrayMap implements SharedNibbleArrayMap
     @Shadow
     public abstract void clearCache();
 
-    private DoubleBufferedLong2ObjectHashMap<ChunkNibbleArray> queue;
+    private DoubleBufferedSectionColumnMap<ChunkNibbleArray> queue;
     private boolean isShared;
 
+    // The light arrays which have been removed or replaced by the owner of this map before they were ever published,
+    // along with the generation in which each was retired. These are only ever allocated for the owner's map.
+    private ObjectArrayList<ChunkNibbleArray> retiredArrays;
+    private LongArrayList retiredGenerations;
+
+    // The number of times a copy of this map has been published to readers
+    private long generation;
+
+    // The backing arrays available to the light arrays owned by this map, which are only ever allocated for the owner's map
+    private NibbleArrayPool pool;
+
     /**
      * @reason Allow shared access, avoid copying
      * @author JellySquid
@@ -34,9 +51,12 @@ public abstract class MixinChunkToNibbleArrayMap implements SharedNibbleArrayMap
     public void replaceWithCopy(long pos) {
         this.checkExclusiveOwner();
 
-        this.queue.putSync(pos, this.queue.getSync(pos).copy());
+        ChunkNibbleArray prev = this.queue.getSync(pos);
+
+        this.queue.putSync(pos, ((RecyclableChunkNibbleArray) prev).copy(this.pool));
 
         this.clearCache();
+        this.retire(prev);
     }
 
     /**
@@ -51,9 +71,17 @@ public abstract class MixinChunkToNibbleArrayMap implements SharedNibbleArrayMap
 
             for(int i = 0; i < cachePositions.length; ++i) {
                 if (pos == cachePositions[i]) {
+                    if (LightEngineMetrics.ENABLED) {
+                        LightEngineMetrics.LIGHT_ARRAY_CACHE_HITS.increment();
+                    }
+
                     return this.cacheArrays[i];
                 }
             }
+
+            if (LightEngineMetrics.ENABLED) {
+                LightEngineMetrics.LIGHT_ARRAY_CACHE_MISSES.increment();
+            }
         }
 
         // Move to a separate method to help the JVM inline methods
@@ -97,6 +125,13 @@ public abstract class MixinChunkToNibbleArrayMap implements SharedNibbleArrayMap
     public void put(long pos, ChunkNibbleArray data) {
         this.checkExclusiveOwner();
 
+        RecyclableChunkNibbleArray recyclable = (RecyclableChunkNibbleArray) data;
+        recyclable.reinstate();
+
+        if (!recyclable.isPublished()) {
+            recyclable.setPool(this.pool);
+        }
+
         this.queue.putSync(pos, data);
     }
 
@@ -108,7 +143,13 @@ public abstract class MixinChunkToNibbleArrayMap implements SharedNibbleArrayMap
     public ChunkNibbleArray removeChunk(long chunkPos) {
         this.checkExclusiveOwner();
 
-        return this.queue.removeSync(chunkPos);
+        ChunkNibbleArray array = this.queue.removeSync(chunkPos);
+
+        if (array != null) {
+            this.retire(array);
+        }
+
+        return array;
     }
 
     /**
@@ -134,8 +175,49 @@ public abstract class MixinChunkToNibbleArrayMap implements SharedNibbleArrayMap
         }
     }
 
+    private void retire(ChunkNibbleArray array) {
+        // Readers may hold onto published arrays indefinitely, so they can never be recycled
+        if (((RecyclableChunkNibbleArray) array).isPublished()) {
+            return;
+        }
+
+        if (this.retiredArrays == null) {
+            this.retiredArrays = new ObjectArrayList<>();
+            this.retiredGenerations = new LongArrayList();
+        }
+
+        ((RecyclableChunkNibbleArray) array).retire(this.generation);
+
+        this.retiredArrays.add(array);
+        this.retiredGenerations.add(this.generation);
+    }
+
+    /**
+     * Only arrays which had never been published are retired, and vanilla may still move a removed array back into the
+     * queue of arrays to add before the next publish. Once a copy of this map has been published, every retired array
+     * which was not put back into use was never seen by another thread, and it can be recycled.
+     */
     @Override
-    public DoubleBufferedLong2ObjectHashMap<ChunkNibbleArray> getUpdateQueue() {
+    public void onPublished() {
+        this.generation++;
+
+        if (this.retiredArrays == null || this.retiredArrays.isEmpty()) {
+            return;
+        }
+
+        ObjectArrayList<ChunkNibbleArray> arrays = this.retiredArrays;
+        LongArrayList generations = this.retiredGenerations;
+
+        for (int i = 0; i < arrays.size(); i++) {
+            ((RecyclableChunkNibbleArray) arrays.get(i)).recycle(generations.getLong(i));
+        }
+
+        arrays.clear();
+        generations.clear();
+    }
+
+    @Override
+    public DoubleBufferedSectionColumnMap<ChunkNibbleArray> getUpdateQueue() {
         return this.queue;
     }
 
@@ -145,16 +227,30 @@ public abstract class MixinChunkToNibbleArrayMap implements SharedNibbleArrayMap
         this.isShared = this.queue != null;
 
         if (this.isShared) {
+            // Readers which find an array through the new copy must see that it has been published
+            markPublished(this.queue);
+
             this.queue.flushChangesSync();
         }
     }
 
+    private static void markPublished(DoubleBufferedSectionColumnMap<ChunkNibbleArray> queue) {
+        for (LongIterator it = queue.getPendingKeysSync().iterator(); it.hasNext(); ) {
+            ChunkNibbleArray array = queue.getSync(it.nextLong());
+
+            if (array != null) {
+                ((RecyclableChunkNibbleArray) array).markPublished();
+            }
+        }
+    }
+
     @Override
     public void init() {
         if (this.queue != null) {
             throw new IllegalStateException("Map already initialized");
         }
 
-        this.queue = new DoubleBufferedLong2ObjectHashMap<>();
+        this.queue = new DoubleBufferedSectionColumnMap<>(ChunkNibbleArray[]::new);
+        this.pool = new NibbleArrayPool();
     }
 }
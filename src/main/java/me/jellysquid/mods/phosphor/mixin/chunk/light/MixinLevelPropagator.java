@@ -2,18 +2,29 @@ package me.jellysquid.mods.phosphor.mixin.chunk.light;
 
 import it.unimi.dsi.fastutil.longs.Long2ByteMap;
 import me.jellysquid.mods.phosphor.common.chunk.level.LevelPropagatorExtended;
-import me.jellysquid.mods.phosphor.common.chunk.level.LevelUpdateListener;
+import me.jellysquid.mods.phosphor.common.chunk.level.PendingUpdateTracker;
+import me.jellysquid.mods.phosphor.common.metrics.LightEngineMetrics;
+import me.jellysquid.mods.phosphor.common.util.collections.SectionedLong2ByteMap;
 import net.minecraft.block.BlockState;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkSectionPos;
+import net.minecraft.util.math.Direction;
 import net.minecraft.util.math.MathHelper;
+import net.minecraft.world.chunk.light.ChunkLightProvider;
 import net.minecraft.world.chunk.light.LevelPropagator;
 import org.spongepowered.asm.mixin.Final;
 import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Mutable;
 import org.spongepowered.asm.mixin.Shadow;
 import org.spongepowered.asm.mixin.injection.At;
-import org.spongepowered.asm.mixin.injection.Redirect;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.ModifyVariable;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
 
 @Mixin(LevelPropagator.class)
-public abstract class MixinLevelPropagator implements LevelPropagatorExtended, LevelUpdateListener {
+public abstract class MixinLevelPropagator implements LevelPropagatorExtended, PendingUpdateTracker {
+    @Mutable
     @Shadow
     @Final
     private Long2ByteMap pendingUpdates;
@@ -31,9 +42,71 @@ public abstract class MixinLevelPropagator implements LevelPropagatorExtended, L
     @Shadow
     protected abstract void updateLevel(long sourceId, long id, int level, int currentLevel, int pendingLevel, boolean decrease);
 
+    @Shadow
+    protected abstract void removePendingUpdate(long id);
+
+    // The number of steps performed outside of the pending update queue while propagating the current update
+    private int consumedSteps;
+
+    /**
+     * The light engine is by far the heaviest user of the pending update queue, and its updates are clustered tightly
+     * around the chunk sections being lit. Replace the flat hash table used by vanilla with one which is bucketed by
+     * chunk section, allowing us to discard all the pending updates of a section without scanning for them. Other
+     * level propagators (such as the chunk ticket managers) are left untouched.
+     */
+    @Inject(method = "<init>", at = @At("RETURN"))
+    private void init(int levelCount, int expectedLevelSize, int expectedTotalSize, CallbackInfo ci) {
+        //noinspection ConstantConditions
+        if ((Object) this instanceof ChunkLightProvider) {
+            SectionedLong2ByteMap map = new SectionedLong2ByteMap(expectedTotalSize / (16 * 16 * 16) + 1);
+            map.defaultReturnValue((byte) -1);
+
+            this.pendingUpdates = map;
+        }
+    }
+
+    @Inject(method = "applyPendingUpdates", at = @At("HEAD"))
+    private void onApplyPendingUpdates(int maxSteps, CallbackInfoReturnable<Integer> cir) {
+        this.consumedSteps = 0;
+    }
+
+    /**
+     * Deducts the steps which were consumed while propagating an update from the remaining budget, see
+     * {@link PendingUpdateTracker#consumeSteps(int)}.
+     */
+    @ModifyVariable(
+        method = "applyPendingUpdates",
+        at = @At(
+            value = "INVOKE",
+            target = "Lnet/minecraft/world/chunk/light/LevelPropagator;propagateLevel(JIZ)V",
+            shift = At.Shift.AFTER
+        ),
+        argsOnly = true
+    )
+    private int deductConsumedSteps(int maxSteps) {
+        int steps = this.consumedSteps;
+
+        if (steps == 0) {
+            return maxSteps;
+        }
+
+        this.consumedSteps = 0;
+
+        return Math.max(0, maxSteps - steps);
+    }
+
+    @Override
+    public void consumeSteps(int steps) {
+        this.consumedSteps += steps;
+    }
+
     // [VanillaCopy] LevelPropagator#propagateLevel(long, long, int, boolean)
     @Override
     public void propagateLevel(long sourceId, BlockState sourceState, long targetId, int level, boolean decrease) {
+        if (LightEngineMetrics.ENABLED) {
+            LightEngineMetrics.PROPAGATE_LEVEL_CALLS.increment();
+        }
+
         int pendingLevel = this.pendingUpdates.get(targetId) & 0xFF;
 
         int propagatedLevel = this.getPropagatedLevel(sourceId, sourceState, targetId, level);
@@ -61,40 +134,70 @@ public abstract class MixinLevelPropagator implements LevelPropagatorExtended, L
         }
     }
 
+    // [VanillaCopy] LevelPropagator#propagateLevel(long, long, int, boolean)
     @Override
-    public int getPropagatedLevel(long sourceId, BlockState sourceState, long targetId, int level) {
-        return this.getPropagatedLevel(sourceId, targetId, level);
-    }
+    public void propagateResolvedLevel(long sourceId, long targetId, int propagatedLevel, int currentLevel, int pendingLevel, boolean decrease) {
+        if (LightEngineMetrics.ENABLED) {
+            LightEngineMetrics.PROPAGATE_LEVEL_CALLS.increment();
+        }
+
+        int clampedLevel = MathHelper.clamp(propagatedLevel, 0, this.levelCount - 1);
 
-    @Redirect(method = { "removePendingUpdate(JIIZ)V", "applyPendingUpdates" }, at = @At(value = "INVOKE", target = "Lit/unimi/dsi/fastutil/longs/Long2ByteMap;remove(J)B", remap = false))
-    private byte redirectRemovePendingUpdate(Long2ByteMap map, long key) {
-        byte ret = map.remove(key);
+        if (decrease) {
+            this.updateLevel(sourceId, targetId, clampedLevel, currentLevel, pendingLevel, true);
 
-        if (ret != map.defaultReturnValue()) {
-            this.onPendingUpdateRemoved(key);
+            return;
         }
 
-        return ret;
-    }
+        boolean flag;
+        int resultLevel;
 
-    @Redirect(method = "addPendingUpdate", at = @At(value = "INVOKE", target = "Lit/unimi/dsi/fastutil/longs/Long2ByteMap;put(JB)B", remap = false))
-    private byte redirectAddPendingUpdate(Long2ByteMap map, long key, byte value) {
-        byte ret = map.put(key, value);
+        if (pendingLevel == 0xFF) {
+            flag = true;
+            resultLevel = MathHelper.clamp(currentLevel, 0, this.levelCount - 1);
+        } else {
+            resultLevel = pendingLevel;
+            flag = false;
+        }
 
-        if (ret == map.defaultReturnValue()) {
-            this.onPendingUpdateAdded(key);
+        if (clampedLevel == resultLevel) {
+            this.updateLevel(sourceId, targetId, this.levelCount - 1, flag ? resultLevel : currentLevel, pendingLevel, false);
         }
+    }
 
-        return ret;
+    @Override
+    public int getPropagatedLevel(long sourceId, BlockState sourceState, long targetId, int level) {
+        return this.getPropagatedLevel(sourceId, targetId, level);
+    }
+
+    @Override
+    public boolean hasPendingUpdate(long id) {
+        return (this.pendingUpdates.get(id) & 0xFF) != 0xFF;
     }
 
     @Override
-    public void onPendingUpdateAdded(long key) {
-        // NO-OP
+    public void getPendingUpdatesOfNeighbors(long id, byte[] levels) {
+        if (this.pendingUpdates instanceof SectionedLong2ByteMap) {
+            ((SectionedLong2ByteMap) this.pendingUpdates).getNeighborsWithinSection(id, levels);
+
+            return;
+        }
+
+        for (Direction dir : Direction.values()) {
+            levels[dir.ordinal()] = this.pendingUpdates.get(BlockPos.offset(id, dir));
+        }
     }
 
     @Override
-    public void onPendingUpdateRemoved(long key) {
-        // NO-OP
+    public void removePendingUpdatesInSection(long sectionPos) {
+        if (!(this.pendingUpdates instanceof SectionedLong2ByteMap)) {
+            throw new UnsupportedOperationException("Level propagator does not track pending updates by section");
+        }
+
+        long origin = BlockPos.asLong(ChunkSectionPos.getWorldCoord(ChunkSectionPos.getX(sectionPos)),
+                ChunkSectionPos.getWorldCoord(ChunkSectionPos.getY(sectionPos)),
+                ChunkSectionPos.getWorldCoord(ChunkSectionPos.getZ(sectionPos)));
+
+        ((SectionedLong2ByteMap) this.pendingUpdates).forEachInSection(origin, this::removePendingUpdate);
     }
 }
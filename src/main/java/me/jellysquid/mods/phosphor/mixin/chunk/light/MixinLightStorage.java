@@ -6,7 +6,14 @@ import it.unimi.dsi.fastutil.objects.ObjectSet;
 import it.unimi.dsi.fastutil.objects.ObjectIterator;
 import me.jellysquid.mods.phosphor.common.chunk.light.LightInitializer;
 import me.jellysquid.mods.phosphor.common.chunk.light.LightProviderUpdateTracker;
+import me.jellysquid.mods.phosphor.common.chunk.light.LightStorageAccess;
+import me.jellysquid.mods.phosphor.common.chunk.light.RecyclableChunkNibbleArray;
+import me.jellysquid.mods.phosphor.common.chunk.light.SharedNibbleArrayMap;
+import me.jellysquid.mods.phosphor.common.chunk.light.SkyLightStorageDataAccess;
 import me.jellysquid.mods.phosphor.common.chunk.light.SharedLightStorageAccess;
+import me.jellysquid.mods.phosphor.common.metrics.LightEngineMetrics;
+import me.jellysquid.mods.phosphor.common.util.collections.SectionStateTable;
+import me.jellysquid.mods.phosphor.common.util.sync.RegionStripedLock;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.ChunkSectionPos;
 import net.minecraft.util.math.Direction;
@@ -31,7 +38,7 @@ import java.util.concurrent.locks.StampedLock;
 
 @SuppressWarnings("OverwriteModifiers")
 @Mixin(value = LightStorage.class, priority = 500)
-public abstract class MixinLightStorage<M extends ChunkToNibbleArrayMap<M>> implements SharedLightStorageAccess<M> {
+public abstract class MixinLightStorage<M extends ChunkToNibbleArrayMap<M>> implements SharedLightStorageAccess<M>, LightStorageAccess {
     @Shadow
     @Final
     protected M lightArrays;
@@ -121,7 +128,40 @@ public abstract class MixinLightStorage<M extends ChunkToNibbleArrayMap<M>> impl
     @Final
     private LongSet field_25621;
 
-    private final StampedLock uncachedLightArraysLock = new StampedLock();
+    private final RegionStripedLock uncachedLightArraysLock = new RegionStripedLock();
+
+    // The flags of each set which tracks sections, see MixinLightStorage#initSectionStates
+    private static final int NON_EMPTY = 1;
+    private static final int FIELD_15804 = 1 << 1;
+    private static final int FIELD_15797 = 1 << 2;
+    private static final int LIGHT_ARRAY_TO_REMOVE = 1 << 3;
+    private static final int COPIED = 1 << 4;
+    private static final int DIRTY = 1 << 5;
+    private static final int PROPAGATING = 1 << 6;
+
+    // Every set other than the non-empty sections is iterated over or cleared after each batch of light updates
+    private final SectionStateTable sectionStates = new SectionStateTable(FIELD_15804 | FIELD_15797 |
+            LIGHT_ARRAY_TO_REMOVE | COPIED | DIRTY | PROPAGATING);
+
+    private final LongSet propagating = this.sectionStates.getSet(PROPAGATING);
+
+    // The last section written into by set(long, int) since the light arrays were last published
+    private long prevSetSection = Long.MIN_VALUE;
+
+    /**
+     * Vanilla tracks the state of each section through several hash sets, many of which are changed together for the
+     * same section. Replace them with views of a single table of packed flags, so that a section only needs to be
+     * hashed once for each change to its state. The views behave as plain sets, so code elsewhere is unaffected.
+     */
+    @Inject(method = "<init>", at = @At("RETURN"))
+    private void initSectionStates(CallbackInfo ci) {
+        this.nonEmptySections = this.sectionStates.getSet(NON_EMPTY);
+        this.field_15804 = this.sectionStates.getSet(FIELD_15804);
+        this.field_15797 = this.sectionStates.getSet(FIELD_15797);
+        this.lightArraysToRemove = this.sectionStates.getSet(LIGHT_ARRAY_TO_REMOVE);
+        this.field_15802 = this.sectionStates.getSet(COPIED);
+        this.dirtySections = this.sectionStates.getSet(DIRTY);
+    }
 
     /**
      * @reason Avoid copying large data structures, add locks
@@ -132,16 +172,83 @@ public abstract class MixinLightStorage<M extends ChunkToNibbleArrayMap<M>> impl
         if (cached) {
             return this.getLightArray(this.lightArrays, sectionPos);
         } else {
-            // We can't be sure that callees won't mutate the underlying data, so this needs to be a
-            // write lock.
-            long stamp = this.uncachedLightArraysLock.writeLock();
-
-            try {
-                return this.getLightArray(this.uncachedLightArrays, sectionPos);
-            } finally {
-                this.uncachedLightArraysLock.unlockWrite(stamp);
+            return this.getUncachedLightArray(sectionPos);
+        }
+    }
+
+    /**
+     * Read-only access to the light arrays which have been published to other threads. The uncached storage is never
+     * written into after being published, and the light arrays within it are snapshots: the owning thread will always
+     * copy an array through {@link ChunkToNibbleArrayMap#replaceWithCopy(long)} (or when moving it back into storage,
+     * see {@link MixinLightStorage#reinstateQueuedLightArray}) before modifying it again. Because of
+     * this, any number of readers can run in parallel using optimistic reads, and the only writer which needs to be
+     * excluded is {@link MixinLightStorage#publishUncachedLightArrays()}, and only if it modifies the same region.
+     *
+     * The returned array must be treated as immutable by callers.
+     */
+    private ChunkNibbleArray getUncachedLightArray(long sectionPos) {
+        StampedLock lock = this.uncachedLightArraysLock.getLock(sectionPos);
+
+        long stamp = lock.tryOptimisticRead();
+
+        if (stamp != 0L) {
+            ChunkNibbleArray array = this.getLightArray(this.uncachedLightArrays, sectionPos);
+
+            if (lock.validate(stamp)) {
+                return array;
             }
         }
+
+        if (LightEngineMetrics.ENABLED) {
+            LightEngineMetrics.STORAGE_LOCK_CONTENDED_READS.increment();
+
+            long start = System.nanoTime();
+            stamp = lock.readLock();
+            LightEngineMetrics.STORAGE_LOCK_WAIT_NANOS.record(System.nanoTime() - start);
+        } else {
+            stamp = lock.readLock();
+        }
+
+        try {
+            return this.getLightArray(this.uncachedLightArrays, sectionPos);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Publishes a new snapshot of the light arrays to readers. This is the only operation which mutates the uncached
+     * storage, and as such, it is the only operation which acquires the write lock. Only the regions which contain
+     * changes are locked, so readers elsewhere in the world are never blocked or invalidated.
+     */
+    private void publishUncachedLightArrays() {
+        // Derived data is computed before the lock is acquired to keep the time spent holding it short
+        if (this.lightArrays instanceof SkyLightStorageDataAccess) {
+            ((SkyLightStorageDataAccess) this.lightArrays).updateColumnHeights();
+        }
+
+        long stripes = this.getModifiedStripes();
+
+        // Copying the storage will flush pending changes to readers, so it must happen while the write lock is held
+        if (LightEngineMetrics.ENABLED) {
+            long start = System.nanoTime();
+            this.uncachedLightArraysLock.lockStripes(stripes);
+            LightEngineMetrics.STORAGE_LOCK_WAIT_NANOS.record(System.nanoTime() - start);
+        } else {
+            this.uncachedLightArraysLock.lockStripes(stripes);
+        }
+
+        try {
+            // This only performs a shallow copy compared to before
+            M map = this.lightArrays.copy();
+            map.disableCache();
+
+            this.uncachedLightArrays = map;
+        } finally {
+            this.uncachedLightArraysLock.unlockStripes(stripes);
+        }
+
+        ((SharedNibbleArrayMap) this.lightArrays).onPublished();
     }
 
     /**
@@ -172,6 +279,10 @@ public abstract class MixinLightStorage<M extends ChunkToNibbleArrayMap<M>> impl
      * Our implementation here avoids this by pre-calculating the min/max chunk coordinates so we can iterate over only
      * the relevant chunk positions once. This reduces what would always be 27 iterations to just 1-8 iterations.
      *
+     * Additionally, light updates are heavily clustered within a section, so we remember the last section which was
+     * written into. Until the next call to {@link MixinLightStorage#notifyChunkProvider()}, that section is known to
+     * have been copied and marked dirty already, so only blocks on the border of a section need to do any bookkeeping.
+     *
      * @reason Use faster implementation
      * @author JellySquid
      */
@@ -183,25 +294,36 @@ public abstract class MixinLightStorage<M extends ChunkToNibbleArrayMap<M>> impl
 
         long chunkPos = ChunkSectionPos.asLong(x >> 4, y >> 4, z >> 4);
 
-        if (this.field_15802.add(chunkPos)) {
-            this.lightArrays.replaceWithCopy(chunkPos);
+        if (chunkPos != this.prevSetSection) {
+            if ((this.sectionStates.update(chunkPos, COPIED | DIRTY, 0) & COPIED) == 0) {
+                this.lightArrays.replaceWithCopy(chunkPos);
+            }
+
+            this.prevSetSection = chunkPos;
         }
 
-        ChunkNibbleArray nibble = this.getLightArray(chunkPos, true);
-        nibble.set(x & 15, y & 15, z & 15, value);
+        int localX = x & 15;
+        int localY = y & 15;
+        int localZ = z & 15;
 
-        for (int z2 = (z - 1) >> 4; z2 <= (z + 1) >> 4; ++z2) {
-            for (int x2 = (x - 1) >> 4; x2 <= (x + 1) >> 4; ++x2) {
-                for (int y2 = (y - 1) >> 4; y2 <= (y + 1) >> 4; ++y2) {
-                    this.dirtySections.add(ChunkSectionPos.asLong(x2, y2, z2));
+        ChunkNibbleArray nibble = this.getLightArray(chunkPos, true);
+        nibble.set(localX, localY, localZ, value);
+
+        // Only blocks on the border of a section can affect the neighboring sections
+        if (localX == 0 || localX == 15 || localY == 0 || localY == 15 || localZ == 0 || localZ == 15) {
+            for (int z2 = (z - 1) >> 4; z2 <= (z + 1) >> 4; ++z2) {
+                for (int x2 = (x - 1) >> 4; x2 <= (x + 1) >> 4; ++x2) {
+                    for (int y2 = (y - 1) >> 4; y2 <= (y + 1) >> 4; ++y2) {
+                        this.dirtySections.add(ChunkSectionPos.asLong(x2, y2, z2));
+                    }
                 }
             }
         }
     }
 
     /**
-     * Combines the contains/remove call to the queued removals set into a single remove call. See {@link MixinLightStorage#set(long, int)}
-     * for additional information.
+     * Combines every change to the section's state into a single update of the section state table. See
+     * {@link MixinLightStorage#set(long, int)} for additional information.
      *
      * @reason Use faster implementation
      * @author JellySquid
@@ -210,21 +332,35 @@ public abstract class MixinLightStorage<M extends ChunkToNibbleArrayMap<M>> impl
     public void setLevel(long id, int level) {
         int prevLevel = this.getLevel(id);
 
+        int set = 0;
+        int clear = 0;
+
         if (prevLevel != 0 && level == 0) {
-            this.nonEmptySections.add(id);
-            this.field_15804.remove(id);
+            set |= NON_EMPTY;
+            clear |= FIELD_15804;
         }
 
         if (prevLevel == 0 && level != 0) {
-            this.nonEmptySections.remove(id);
-            this.field_15797.remove(id);
+            clear |= NON_EMPTY | FIELD_15797;
         }
 
-        if (prevLevel >= 2 && level != 2) {
-            if (!this.lightArraysToRemove.remove(id)) {
+        boolean createLightArray = prevLevel >= 2 && level != 2;
+
+        if (createLightArray) {
+            clear |= LIGHT_ARRAY_TO_REMOVE;
+        }
+
+        if (prevLevel != 2 && level >= 2) {
+            set |= LIGHT_ARRAY_TO_REMOVE;
+        }
+
+        int prevFlags = this.sectionStates.update(id, set, clear);
+
+        if (createLightArray) {
+            if ((prevFlags & LIGHT_ARRAY_TO_REMOVE) == 0) {
                 this.lightArrays.put(id, this.createLightArray(id));
 
-                this.field_15802.add(id);
+                this.sectionStates.update(id, COPIED, 0);
                 this.onLightArrayCreated(id);
 
                 int x = BlockPos.unpackLongX(id);
@@ -241,10 +377,6 @@ public abstract class MixinLightStorage<M extends ChunkToNibbleArrayMap<M>> impl
             }
         }
 
-        if (prevLevel != 2 && level >= 2) {
-            this.lightArraysToRemove.add(id);
-        }
-
         this.hasLightUpdates = !this.lightArraysToRemove.isEmpty();
     }
 
@@ -261,8 +393,6 @@ public abstract class MixinLightStorage<M extends ChunkToNibbleArrayMap<M>> impl
         }
     }
 
-    private final LongSet propagating = new LongOpenHashSet();
-
     @Redirect(
         method = "updateLightArrays(Lnet/minecraft/world/chunk/light/ChunkLightProvider;ZZ)V",
         at = @At(value = "INVOKE", target = "Lit/unimi/dsi/fastutil/objects/ObjectSet;iterator()Lit/unimi/dsi/fastutil/objects/ObjectIterator;", ordinal = 0)
@@ -271,6 +401,35 @@ public abstract class MixinLightStorage<M extends ChunkToNibbleArrayMap<M>> impl
         return Long2ObjectMaps.fastIterator(this.lightArraysToAdd);
     }
 
+    /**
+     * Light arrays which are removed from the storage of a column which is still queued for loading are moved back
+     * into the queue of arrays to add. As removing them from the storage may have retired them, we need to mark them as
+     * in use again so that they will not be recycled.
+     *
+     * Vanilla marks the section as copied when the array is put back into the storage, after which it is written into
+     * directly. If the array has already been published, readers may still be using it, so the storage gets its own
+     * copy instead.
+     */
+    @Redirect(
+        method = "updateLightArrays(Lnet/minecraft/world/chunk/light/ChunkLightProvider;ZZ)V",
+        at = @At(value = "INVOKE", target = "Lit/unimi/dsi/fastutil/longs/Long2ObjectMap;put(JLjava/lang/Object;)Ljava/lang/Object;")
+    )
+    private Object reinstateQueuedLightArray(Long2ObjectMap<ChunkNibbleArray> map, long pos, Object array) {
+        ChunkNibbleArray lightArray = (ChunkNibbleArray) array;
+
+        if (lightArray != null) {
+            RecyclableChunkNibbleArray recyclable = (RecyclableChunkNibbleArray) lightArray;
+
+            if (recyclable.isPublished()) {
+                lightArray = lightArray.copy();
+            } else {
+                recyclable.reinstate();
+            }
+        }
+
+        return map.put(pos, lightArray);
+    }
+
     @Inject(
         method = "updateLightArrays(Lnet/minecraft/world/chunk/light/ChunkLightProvider;ZZ)V",
         slice = @Slice(
@@ -380,24 +539,20 @@ public abstract class MixinLightStorage<M extends ChunkToNibbleArrayMap<M>> impl
      */
     @Overwrite
     public void notifyChunkProvider() {
-        if (!this.field_15802.isEmpty()) {
-            // This could result in changes being flushed to various arrays, so write lock.
-            long stamp = this.uncachedLightArraysLock.writeLock();
-
-            try {
-                // This only performs a shallow copy compared to before
-                M map = this.lightArrays.copy();
-                map.disableCache();
+        // The published arrays will now be shared with readers, so the next write must go through the full bookkeeping
+        this.prevSetSection = Long.MIN_VALUE;
 
-                this.uncachedLightArrays = map;
-            } finally {
-                this.uncachedLightArraysLock.unlockWrite(stamp);
-            }
+        if (!this.field_15802.isEmpty()) {
+            this.publishUncachedLightArrays();
 
             this.field_15802.clear();
         }
 
         if (!this.dirtySections.isEmpty()) {
+            if (LightEngineMetrics.ENABLED) {
+                LightEngineMetrics.FLUSHED_DIRTY_SECTIONS.record(this.dirtySections.size());
+            }
+
             LongIterator it = this.dirtySections.iterator();
 
             while(it.hasNext()) {
@@ -415,8 +570,35 @@ public abstract class MixinLightStorage<M extends ChunkToNibbleArrayMap<M>> impl
         return this.uncachedLightArrays;
     }
 
+    /**
+     * Returns the set of lock stripes which contain any changes which have not yet been published.
+     */
+    private long getModifiedStripes() {
+        long stripes = this.uncachedLightArraysLock.getStripeMask(((SharedNibbleArrayMap) this.lightArrays).getUpdateQueue().getPendingKeysSync());
+
+        // Sky light storage also publishes the height maps, which readers expect to be consistent with the light arrays
+        if (this.lightArrays instanceof SkyLightStorageDataAccess) {
+            SkyLightStorageDataAccess data = (SkyLightStorageDataAccess) this.lightArrays;
+
+            stripes |= this.uncachedLightArraysLock.getStripeMask(data.getHeightQueue().getPendingKeysSync());
+            stripes |= this.uncachedLightArraysLock.getStripeMask(data.getColumnHeightQueue().getPendingKeysSync());
+        }
+
+        return stripes;
+    }
+
+    @Override
+    public StampedLock getStorageLock(long sectionPos) {
+        return this.uncachedLightArraysLock.getLock(sectionPos);
+    }
+
+    @Override
+    public ChunkNibbleArray getCachedLightArray(long sectionPos) {
+        return this.getLightArray(this.lightArrays, sectionPos);
+    }
+
     @Override
-    public StampedLock getStorageLock() {
-        return this.uncachedLightArraysLock;
+    public LongSet getDirtySections() {
+        return this.dirtySections;
     }
 }
@@ -0,0 +1,44 @@
+package me.jellysquid.mods.phosphor.mixin.chunk.light;
+
+import it.unimi.dsi.fastutil.longs.LongCollection;
+import me.jellysquid.mods.phosphor.common.chunk.light.LightProviderBatchUpdater;
+import net.minecraft.world.chunk.light.ChunkLightProvider;
+import net.minecraft.world.chunk.light.LightingProvider;
+import org.spongepowered.asm.mixin.Final;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Shadow;
+
+@Mixin(LightingProvider.class)
+public abstract class MixinLightingProvider implements LightProviderBatchUpdater {
+    @Shadow
+    @Final
+    private ChunkLightProvider<?, ?> blockLightProvider;
+
+    @Shadow
+    @Final
+    private ChunkLightProvider<?, ?> skyLightProvider;
+
+    // [VanillaCopy] LightingProvider#checkBlock(BlockPos)
+    @Override
+    public void checkBlocks(LongCollection positions) {
+        if (this.blockLightProvider != null) {
+            ((LightProviderBatchUpdater) this.blockLightProvider).checkBlocks(positions);
+        }
+
+        if (this.skyLightProvider != null) {
+            ((LightProviderBatchUpdater) this.skyLightProvider).checkBlocks(positions);
+        }
+    }
+
+    // [VanillaCopy] LightingProvider#checkBlock(BlockPos)
+    @Override
+    public void checkBlocks(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        if (this.blockLightProvider != null) {
+            ((LightProviderBatchUpdater) this.blockLightProvider).checkBlocks(minX, minY, minZ, maxX, maxY, maxZ);
+        }
+
+        if (this.skyLightProvider != null) {
+            ((LightProviderBatchUpdater) this.skyLightProvider).checkBlocks(minX, minY, minZ, maxX, maxY, maxZ);
+        }
+    }
+}
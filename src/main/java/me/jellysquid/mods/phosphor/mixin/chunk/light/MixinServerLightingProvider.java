@@ -0,0 +1,77 @@
+package me.jellysquid.mods.phosphor.mixin.chunk.light;
+
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongCollection;
+import me.jellysquid.mods.phosphor.common.chunk.light.LightProviderBatchUpdater;
+import net.minecraft.server.world.ServerLightingProvider;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.LightType;
+import net.minecraft.world.chunk.light.ChunkLightingView;
+import net.minecraft.world.chunk.light.LightingProvider;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Shadow;
+
+/**
+ * On the server, the light engine is owned by the lighting thread, and vanilla's checkBlock only queues a task for it
+ * instead of touching the light providers directly. Batched checks must go through the same queue, otherwise they
+ * would race the updates being processed by the lighting thread.
+ *
+ * Each batch is queued as a single post-update task, which is the stage vanilla's checkBlock uses, so that a batch runs
+ * in the same order relative to other queued tasks (such as enabling sections) as the individual checks it replaces.
+ * Tasks are prioritized by chunk, so a batch is queued against the chunk it starts in.
+ */
+@Mixin(ServerLightingProvider.class)
+public abstract class MixinServerLightingProvider implements LightProviderBatchUpdater {
+    private static final LightType[] LIGHT_TYPES = LightType.values();
+
+    @Shadow
+    protected abstract void enqueue(int x, int z, ServerLightingProvider.Stage stage, Runnable task);
+
+    @Override
+    public void checkBlocks(LongCollection positions) {
+        if (positions.isEmpty()) {
+            return;
+        }
+
+        // The caller is free to re-use the collection once we return
+        LongArrayList copy = new LongArrayList(positions);
+        long origin = copy.getLong(0);
+
+        this.enqueue(BlockPos.unpackLongX(origin) >> 4, BlockPos.unpackLongZ(origin) >> 4, ServerLightingProvider.Stage.POST_UPDATE, () -> {
+            for (LightType type : LIGHT_TYPES) {
+                LightProviderBatchUpdater provider = this.getBatchUpdater(type);
+
+                if (provider != null) {
+                    provider.checkBlocks(copy);
+                }
+            }
+        });
+    }
+
+    @Override
+    public void checkBlocks(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        this.enqueue(minX >> 4, minZ >> 4, ServerLightingProvider.Stage.POST_UPDATE, () -> {
+            for (LightType type : LIGHT_TYPES) {
+                LightProviderBatchUpdater provider = this.getBatchUpdater(type);
+
+                if (provider != null) {
+                    provider.checkBlocks(minX, minY, minZ, maxX, maxY, maxZ);
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns the light provider for {@param type}, or null if this world does not have one.
+     */
+    private LightProviderBatchUpdater getBatchUpdater(LightType type) {
+        ChunkLightingView view = ((LightingProvider) (Object) this).get(type);
+
+        // Worlds without a light type use an empty view in its place
+        if (view instanceof LightProviderBatchUpdater) {
+            return (LightProviderBatchUpdater) view;
+        }
+
+        return null;
+    }
+}
@@ -1,8 +1,10 @@
 package me.jellysquid.mods.phosphor.mixin.chunk.light;
 
 import me.jellysquid.mods.phosphor.common.chunk.light.SharedLightStorageAccess;
+import me.jellysquid.mods.phosphor.common.chunk.light.SharedNibbleArrayMap;
 import me.jellysquid.mods.phosphor.common.chunk.light.SkyLightStorageDataAccess;
-import me.jellysquid.mods.phosphor.common.util.math.ChunkSectionPosHelper;
+import me.jellysquid.mods.phosphor.common.metrics.LightEngineMetrics;
+import me.jellysquid.mods.phosphor.common.util.collections.DoubleBufferedSectionColumnMap;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.ChunkSectionPos;
 import net.minecraft.world.chunk.ChunkNibbleArray;
@@ -17,6 +19,11 @@ public abstract class MixinSkyLightStorage {
     /**
      * An optimized implementation which avoids constantly unpacking and repacking integer coordinates.
      *
+     * The storage lock is only ever write-locked for the short period in which the uncached light arrays are swapped
+     * out, so we first try an optimistic read which does not write to any shared memory. The uncached storage and the
+     * light arrays within it are never mutated after being published, so reading them while a swap is in progress
+     * is always safe, and we only need to retry with a real read lock if the stamp was invalidated during the read.
+     *
      * @reason Use faster implementation
      * @author JellySquid
      */
@@ -27,44 +34,88 @@ public abstract class MixinSkyLightStorage {
         int posY = BlockPos.unpackLongY(pos);
         int posZ = BlockPos.unpackLongZ(pos);
 
+        SharedLightStorageAccess<SkyLightStorage.Data> storage = (SharedLightStorageAccess<SkyLightStorage.Data>) this;
+        // Every section read below belongs to the same column, and as such, the same region
+        StampedLock lock = storage.getStorageLock(ChunkSectionPos.asLong(ChunkSectionPos.getSectionCoord(posX), 0,
+                ChunkSectionPos.getSectionCoord(posZ)));
+
+        long stamp = lock.tryOptimisticRead();
+
+        if (stamp != 0L) {
+            int light = getLightFromStorage(storage.getStorage(), posX, posY, posZ);
+
+            if (lock.validate(stamp)) {
+                return light;
+            }
+        }
+
+        // The optimistic read failed because a writer acquired the lock, fall back to a full read lock
+        if (LightEngineMetrics.ENABLED) {
+            LightEngineMetrics.STORAGE_LOCK_CONTENDED_READS.increment();
+
+            long start = System.nanoTime();
+            stamp = lock.readLock();
+            LightEngineMetrics.STORAGE_LOCK_WAIT_NANOS.record(System.nanoTime() - start);
+        } else {
+            stamp = lock.readLock();
+        }
+
+        try {
+            return getLightFromStorage(storage.getStorage(), posX, posY, posZ);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private static int getLightFromStorage(SkyLightStorage.Data data, int posX, int posY, int posZ) {
         int chunkX = ChunkSectionPos.getSectionCoord(posX);
         int chunkY = ChunkSectionPos.getSectionCoord(posY);
         int chunkZ = ChunkSectionPos.getSectionCoord(posZ);
 
         long chunk = ChunkSectionPos.asLong(chunkX, chunkY, chunkZ);
 
-        // This lock is really horrible. Maybe there is some way to work around it?
-        StampedLock lock = ((SharedLightStorageAccess<SkyLightStorage.Data>) this).getStorageLock();
-        long stamp = lock.readLock();
+        SkyLightStorageDataAccess sdata = ((SkyLightStorageDataAccess) (Object) data);
 
-        ChunkNibbleArray array;
+        long column = ChunkSectionPos.withZeroZ(chunk);
 
-        try {
-            SkyLightStorage.Data data = ((SharedLightStorageAccess<SkyLightStorage.Data>) this).getStorage();
-            SkyLightStorageDataAccess sdata = ((SkyLightStorageDataAccess) (Object) data);
+        // Most queries are for blocks above the terrain, which can be answered without looking at the light arrays
+        short[] columnHeights = sdata.getColumnHeights(column);
 
-            int height = sdata.getHeight(ChunkSectionPos.withZeroZ(chunk));
+        if (columnHeights != null && posY >= columnHeights[(ChunkSectionPos.getLocalCoord(posZ) << 4) | ChunkSectionPos.getLocalCoord(posX)]) {
+            return 15;
+        }
 
-            if (height == sdata.getDefaultHeight() || chunkY >= height) {
-                return 15;
-            }
+        int height = sdata.getHeight(column);
 
-            array = data.get(chunk);
+        if (height == sdata.getDefaultHeight() || chunkY >= height) {
+            return 15;
+        }
 
-            while (array == null) {
-                ++chunkY;
+        // Walk up the column's array of sections directly instead of looking up each section above
+        ChunkNibbleArray[] sections = ((SharedNibbleArrayMap) (Object) data).getUpdateQueue().getColumnAsync(chunk);
 
-                if (chunkY >= height) {
-                    return 15;
-                }
+        if (sections == null) {
+            return 15;
+        }
 
-                chunk = ChunkSectionPosHelper.updateYLong(chunk, chunkY);
-                array = data.get(chunk);
+        if (chunkY < DoubleBufferedSectionColumnMap.MIN_SECTION_Y) {
+            // No light data is stored this far down, so the walk below would start at the lowest section
+            chunkY = DoubleBufferedSectionColumnMap.MIN_SECTION_Y;
+            posY = chunkY << 4;
+        }
 
-                posY = chunkY << 4;
+        ChunkNibbleArray array = sections[chunkY - DoubleBufferedSectionColumnMap.MIN_SECTION_Y];
+
+        while (array == null) {
+            ++chunkY;
+
+            if (chunkY >= height || chunkY > DoubleBufferedSectionColumnMap.MAX_SECTION_Y) {
+                return 15;
             }
-        } finally {
-            lock.unlockRead(stamp);
+
+            array = sections[chunkY - DoubleBufferedSectionColumnMap.MIN_SECTION_Y];
+
+            posY = chunkY << 4;
         }
 
         return array.get(
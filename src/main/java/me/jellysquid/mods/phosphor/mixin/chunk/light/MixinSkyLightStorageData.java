@@ -1,19 +1,33 @@
 package me.jellysquid.mods.phosphor.mixin.chunk.light;
 
+import it.unimi.dsi.fastutil.longs.Long2IntMap;
+import it.unimi.dsi.fastutil.longs.Long2IntMaps;
 import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
 import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.objects.ObjectIterator;
+import me.jellysquid.mods.phosphor.common.chunk.light.CompactChunkNibbleArray;
 import me.jellysquid.mods.phosphor.common.chunk.light.SharedNibbleArrayMap;
 import me.jellysquid.mods.phosphor.common.chunk.light.SkyLightStorageDataAccess;
 import me.jellysquid.mods.phosphor.common.chunk.light.SharedSkyLightData;
+import me.jellysquid.mods.phosphor.common.util.collections.CapacityTracker;
 import me.jellysquid.mods.phosphor.common.util.collections.DoubleBufferedLong2IntHashMap;
+import me.jellysquid.mods.phosphor.common.util.collections.DoubleBufferedLong2ObjectHashMap;
+import me.jellysquid.mods.phosphor.common.util.collections.DoubleBufferedSectionColumnMap;
+import net.minecraft.util.math.ChunkSectionPos;
 import net.minecraft.world.chunk.ChunkNibbleArray;
 import net.minecraft.world.chunk.ChunkToNibbleArrayMap;
 import net.minecraft.world.chunk.light.SkyLightStorage;
 import org.spongepowered.asm.mixin.*;
 
+import java.util.ArrayList;
+
 @Mixin(SkyLightStorage.Data.class)
 public class MixinSkyLightStorageData extends ChunkToNibbleArrayMap<SkyLightStorage.Data>
         implements SkyLightStorageDataAccess, SharedSkyLightData {
+    // The number of unused arrays of column heights which are kept around for re-use
+    private static final int MAX_FREE_COLUMN_HEIGHTS = 256;
+
     @Shadow
     private int defaultTopArraySectionY;
 
@@ -25,23 +39,50 @@ public class MixinSkyLightStorageData extends ChunkToNibbleArrayMap<SkyLightStor
     // Our new double-buffered collection
     private DoubleBufferedLong2IntHashMap topArraySectionYQueue;
 
+    // The lowest Y coordinate above which every block is fully sky-lit, for each block column of each chunk column
+    private DoubleBufferedLong2ObjectHashMap<short[]> columnHeightQueue;
+
     // Indicates whether or not the extended data structures have been initialized
     private boolean init;
 
+    // Scratch map of the chunk columns which have changed since the last update of the column heights, to the highest
+    // section in each which changed
+    private final Long2IntOpenHashMap changedColumns = createChangedColumnsMap();
+    private final CapacityTracker changedColumnsCapacity = new CapacityTracker();
+
+    // The arrays of column heights which were replaced during the last update, and which may still be visible to other
+    // threads until the update has been published
+    private final ArrayList<short[]> retiredColumnHeights = new ArrayList<>();
+
+    // The arrays of column heights which are no longer visible to other threads and can be re-used
+    private final ArrayList<short[]> freeColumnHeights = new ArrayList<>();
+
     protected MixinSkyLightStorageData(Long2ObjectOpenHashMap<ChunkNibbleArray> arrays) {
         super(arrays);
     }
 
+    private static Long2IntOpenHashMap createChangedColumnsMap() {
+        Long2IntOpenHashMap map = new Long2IntOpenHashMap();
+        map.defaultReturnValue(Integer.MIN_VALUE);
+
+        return map;
+    }
+
     @Override
-    public void makeSharedCopy(Long2IntOpenHashMap map, DoubleBufferedLong2IntHashMap queue) {
+    public void makeSharedCopy(Long2IntOpenHashMap map, DoubleBufferedLong2IntHashMap queue, DoubleBufferedLong2ObjectHashMap<short[]> columnHeights) {
         this.topArraySectionYQueue = queue;
         this.topArraySectionY = map;
+        this.columnHeightQueue = columnHeights;
 
         // We need to immediately see all updates on the thread this is being copied to
         if (queue != null) {
             queue.flushChangesSync();
         }
 
+        if (columnHeights != null) {
+            columnHeights.flushChangesSync();
+        }
+
         // Copies of this map should not re-initialize the data structures!
         this.init = true;
     }
@@ -60,7 +101,7 @@ public class MixinSkyLightStorageData extends ChunkToNibbleArrayMap<SkyLightStor
         }
 
         SkyLightStorage.Data data = new SkyLightStorage.Data(this.arrays, this.topArraySectionY, this.defaultTopArraySectionY);
-        ((SharedSkyLightData) (Object) data).makeSharedCopy(this.topArraySectionY, this.topArraySectionYQueue);
+        ((SharedSkyLightData) (Object) data).makeSharedCopy(this.topArraySectionY, this.topArraySectionYQueue, this.columnHeightQueue);
         ((SharedNibbleArrayMap) (Object) data).makeSharedCopy((SharedNibbleArrayMap) this);
 
         return data;
@@ -72,6 +113,8 @@ public class MixinSkyLightStorageData extends ChunkToNibbleArrayMap<SkyLightStor
         this.topArraySectionYQueue = new DoubleBufferedLong2IntHashMap();
         this.topArraySectionY = this.topArraySectionYQueue.createSyncView();
 
+        this.columnHeightQueue = new DoubleBufferedLong2ObjectHashMap<>();
+
         this.init = true;
     }
 
@@ -84,4 +127,195 @@ public class MixinSkyLightStorageData extends ChunkToNibbleArrayMap<SkyLightStor
     public int getHeight(long pos) {
         return this.topArraySectionYQueue.getAsync(pos);
     }
+
+    @Override
+    public DoubleBufferedLong2IntHashMap getHeightQueue() {
+        return this.topArraySectionYQueue;
+    }
+
+    @Override
+    public short[] getColumnHeights(long pos) {
+        return this.columnHeightQueue.getAsync(pos);
+    }
+
+    @Override
+    public DoubleBufferedLong2ObjectHashMap<short[]> getColumnHeightQueue() {
+        return this.columnHeightQueue;
+    }
+
+    /**
+     * Only the block columns whose height could have been affected by the changes are scanned again. A block column
+     * only needs to be scanned again if one of the sections which changed is at or above the section containing its
+     * current height, as every block above the height is fully lit and every section below it is never looked at. The
+     * scan can also start at the highest section which changed rather than the top of the column.
+     *
+     * The arrays of heights are never modified once published, so a new array is needed for every chunk column which
+     * changes. The array it replaces can be re-used once the new one has been published, as publishing write-locks
+     * the region of every chunk column which changed. A reader which is still holding onto the old array after that
+     * will fail to validate its optimistic read and try again, and will then find the new array.
+     */
+    @Override
+    public void updateColumnHeights() {
+        // The arrays retired by the previous update have since been replaced in the published view
+        ArrayList<short[]> free = this.freeColumnHeights;
+
+        for (short[] heights : this.retiredColumnHeights) {
+            if (free.size() >= MAX_FREE_COLUMN_HEIGHTS) {
+                break;
+            }
+
+            free.add(heights);
+        }
+
+        this.retiredColumnHeights.clear();
+
+        DoubleBufferedSectionColumnMap<ChunkNibbleArray> arrays = ((SharedNibbleArrayMap) this).getUpdateQueue();
+
+        Long2IntOpenHashMap columns = this.changedColumns;
+
+        for (LongIterator it = arrays.getPendingKeysSync().iterator(); it.hasNext(); ) {
+            long pos = it.nextLong();
+            long column = ChunkSectionPos.withZeroZ(pos);
+            int y = ChunkSectionPos.getY(pos);
+
+            if (y > columns.get(column)) {
+                columns.put(column, y);
+            }
+        }
+
+        // The top of the column's light data has changed, so every block column needs to be scanned again
+        for (LongIterator it = this.topArraySectionYQueue.getPendingKeysSync().iterator(); it.hasNext(); ) {
+            columns.put(it.nextLong(), Integer.MAX_VALUE);
+        }
+
+        for (ObjectIterator<Long2IntMap.Entry> it = Long2IntMaps.fastIterator(columns); it.hasNext(); ) {
+            Long2IntMap.Entry entry = it.next();
+
+            this.updateColumnHeights(arrays, entry.getLongKey(), entry.getIntValue());
+        }
+
+        int capacity = this.changedColumnsCapacity.onClear(columns.size());
+
+        columns.clear();
+
+        if (capacity >= 0) {
+            columns.trim(capacity);
+        }
+    }
+
+    /**
+     * Updates the heights of a chunk column after the sections at or below {@param maxChangedY} have changed.
+     */
+    private void updateColumnHeights(DoubleBufferedSectionColumnMap<ChunkNibbleArray> arrays, long column, int maxChangedY) {
+        short[] prev = this.columnHeightQueue.getSync(column);
+
+        int top = this.topArraySectionYQueue.getSync(column);
+
+        if (top == this.defaultTopArraySectionY) {
+            if (prev != null) {
+                this.columnHeightQueue.removeSync(column);
+                this.retiredColumnHeights.add(prev);
+            }
+
+            return;
+        }
+
+        // Null if none of the sections in the column have light data, in which case every block is fully lit
+        ChunkNibbleArray[] sections = arrays.getColumnSync(column);
+
+        int maxY = Math.min(top - 1, DoubleBufferedSectionColumnMap.MAX_SECTION_Y);
+        int startY = Math.min(maxChangedY, maxY);
+
+        short[] heights = this.allocateColumnHeights();
+        boolean changed = prev == null;
+
+        for (int idx = 0; idx < 16 * 16; idx++) {
+            int height;
+
+            if (prev == null) {
+                height = scanColumnHeight(sections, idx, maxY);
+            } else {
+                height = prev[idx];
+
+                // The section containing the block column's height, or any section if every block in it is lit
+                int heightSectionY = height == Short.MIN_VALUE ? Integer.MIN_VALUE : (height - 1) >> 4;
+
+                if (maxChangedY >= heightSectionY) {
+                    height = scanColumnHeight(sections, idx, startY);
+
+                    changed |= height != prev[idx];
+                }
+            }
+
+            heights[idx] = (short) height;
+        }
+
+        if (changed) {
+            this.columnHeightQueue.putSync(column, heights);
+
+            if (prev != null) {
+                this.retiredColumnHeights.add(prev);
+            }
+        } else {
+            this.freeColumnHeights.add(heights);
+        }
+    }
+
+    private short[] allocateColumnHeights() {
+        ArrayList<short[]> free = this.freeColumnHeights;
+
+        if (free.isEmpty()) {
+            return new short[16 * 16];
+        }
+
+        return free.remove(free.size() - 1);
+    }
+
+    /**
+     * Scans down a block column from the section at {@param startY} until a block which is not fully sky-lit is found.
+     * This mirrors the behavior of SkyLightStorage#getLight(long), where sections without light data inherit the light
+     * of the bottom of the nearest section above them. Every block above {@param startY} must be fully lit.
+     *
+     * @param idx The index of the block column, (z << 4) | x
+     * @return The lowest Y coordinate at and above which every block is fully lit, or {@link Short#MIN_VALUE} if every
+     * block in the block column is fully lit
+     */
+    private static int scanColumnHeight(ChunkNibbleArray[] sections, int idx, int startY) {
+        if (sections == null) {
+            return Short.MIN_VALUE;
+        }
+
+        int minY = DoubleBufferedSectionColumnMap.MIN_SECTION_Y;
+
+        int x = idx & 15;
+        int z = idx >> 4;
+
+        for (int chunkY = startY; chunkY >= minY; chunkY--) {
+            ChunkNibbleArray array = sections[chunkY - minY];
+
+            if (array == null) {
+                continue;
+            }
+
+            int uniformLevel = ((CompactChunkNibbleArray) array).getUniformLevel();
+
+            if (uniformLevel == 15) {
+                continue;
+            }
+
+            int y = 15;
+
+            if (uniformLevel < 0) {
+                while (y >= 0 && array.get(x, y, z) == 15) {
+                    y--;
+                }
+            }
+
+            if (y >= 0) {
+                return (chunkY << 4) + y + 1;
+            }
+        }
+
+        return Short.MIN_VALUE;
+    }
 }
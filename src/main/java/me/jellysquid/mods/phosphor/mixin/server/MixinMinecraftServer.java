@@ -0,0 +1,23 @@
+package me.jellysquid.mods.phosphor.mixin.server;
+
+import me.jellysquid.mods.phosphor.common.PhosphorMod;
+import me.jellysquid.mods.phosphor.common.metrics.LightEngineMetrics;
+import net.minecraft.server.MinecraftServer;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+@Mixin(MinecraftServer.class)
+public abstract class MixinMinecraftServer {
+    /**
+     * Dumps the light engine metrics once the server has stopped, while logging is still available. This also runs when
+     * the integrated server of a singleplayer world is stopped.
+     */
+    @Inject(method = "shutdown", at = @At("RETURN"))
+    private void onShutdown(CallbackInfo ci) {
+        if (LightEngineMetrics.ENABLED) {
+            PhosphorMod.dumpMetrics();
+        }
+    }
+}